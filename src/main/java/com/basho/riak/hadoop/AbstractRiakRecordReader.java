@@ -0,0 +1,358 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+
+/**
+ * Base {@link RecordReader} for a {@link RiakInputSplit}. Works through the
+ * split's keys in order, and leaves it to the sub class to turn each key into
+ * a value. Sub classes that need to talk to Riak use {@link #getFetcher()},
+ * which reads from the split's candidate {@link RiakLocation}s.
+ * 
+ * Sub classes that return a new value for every record can allow read ahead
+ * by overriding {@link #canPrefetch()}, then up to
+ * {@link RiakConfig#getFetchConcurrency(Configuration)} keys are read
+ * concurrently. Records are still returned in split order.
+ * 
+ * If the job has an {@link InputLimit} the reader stops early once the job
+ * has read it. If the job is incremental, with no last modified index, keys
+ * that haven't been modified since the job's {@link Watermark} are checked
+ * with a HEAD request and skipped. If the job saves {@link Checkpoint}s, a
+ * retried attempt starts after the keys the failed attempt mapped. A reader
+ * that reads all of its split records it in the job's {@link CompletionLedger}.
+ * 
+ * @author russell
+ * @param <V>
+ *            the type of the value
+ * 
+ */
+public abstract class AbstractRiakRecordReader<V> extends RecordReader<BucketKey, V> {
+
+    private RiakInputSplit split;
+    private Configuration conf;
+    private RiakFetcher fetcher;
+    private ConcurrentLinkedQueue<BucketKey> keys;
+    private long initialSize;
+    private BucketKey currentKey;
+    private V currentValue;
+    private int prefetch;
+    private InputLimit limit;
+    private long modifiedAfter = -1;
+    private Checkpoint checkpoint;
+    private TaskAttemptContext context;
+    /**
+     * The number of keys taken up to and including the current one
+     */
+    private long position = 0;
+    private ExecutorService prefetcher;
+    private final LinkedList<BucketKey> pendingKeys = new LinkedList<BucketKey>();
+    private final LinkedList<Future<V>> pendingValues = new LinkedList<Future<V>>();
+
+    /**
+     * Produce the value for <code>key</code>
+     * 
+     * @param key
+     *            the next key in the split
+     * @return the value for <code>key</code>
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    protected abstract V read(BucketKey key) throws IOException, InterruptedException;
+
+    /**
+     * @return true if {@link #read(BucketKey)} can be called concurrently and
+     *         returns a new value each time, false (the default) otherwise
+     */
+    protected boolean canPrefetch() {
+        return false;
+    }
+
+    /**
+     * @return the {@link RiakFetcher} for this split, connected on first use
+     */
+    protected synchronized RiakFetcher getFetcher() {
+        if (fetcher == null) {
+            LocationSelector selector = new LocationSelector(split.getRiakLocations());
+            selector.probe();
+            fetcher = new RiakFetcher(selector, conf, AdaptiveThrottle.forTask(context));
+        }
+        return fetcher;
+    }
+
+    /**
+     * @return the job {@link Configuration}
+     */
+    protected Configuration getConfiguration() {
+        return conf;
+    }
+
+    /**
+     * @return the split being read
+     */
+    protected RiakInputSplit getSplit() {
+        return split;
+    }
+
+    /**
+     * @return the index in the split of the key being read. Only valid in
+     *         {@link #read(BucketKey)} of a reader that doesn't prefetch
+     */
+    protected long getPosition() {
+        return position - 1;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#close()
+     */
+    @Override public synchronized void close() throws IOException {
+        for (Future<V> pending : pendingValues) {
+            pending.cancel(true);
+        }
+        if (prefetcher != null) {
+            prefetcher.shutdownNow();
+        }
+        if (fetcher != null) {
+            fetcher.close();
+        }
+        if (limit != null) {
+            limit.close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentKey()
+     */
+    @Override public BucketKey getCurrentKey() throws IOException, InterruptedException {
+        return currentKey;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentValue()
+     */
+    @Override public V getCurrentValue() throws IOException, InterruptedException {
+        return currentValue;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#getProgress()
+     */
+    @Override public float getProgress() throws IOException, InterruptedException {
+        if (initialSize == 0) {
+            return 1;
+        } else {
+            return (initialSize - keys.size()) / (float) initialSize;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.RecordReader#initialize(org.apache.hadoop
+     * .mapreduce.InputSplit, org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public void initialize(InputSplit split, TaskAttemptContext taskAttemptContext) throws IOException,
+            InterruptedException {
+        this.split = (RiakInputSplit) split;
+        this.conf = taskAttemptContext.getConfiguration();
+        this.context = taskAttemptContext;
+        keys = new ConcurrentLinkedQueue<BucketKey>(this.split.getInputs());
+        initialSize = split.getLength();
+        prefetch = canPrefetch() ? RiakConfig.getFetchConcurrency(conf) : 1;
+        limit = InputLimit.get(taskAttemptContext);
+        checkpoint = Checkpoint.get(taskAttemptContext);
+
+        if (checkpoint != null) {
+            long done = checkpoint.restore();
+            while (position < done && keys.poll() != null) {
+                position++;
+            }
+        }
+
+        if (RiakConfig.getIncrementalName(conf) != null && RiakConfig.getLastModifiedIndex(conf) == null) {
+            long watermark = Watermark.get(conf);
+            // the first run reads everything. Last modified dates may only be
+            // to the second, so compare with the watermark's second
+            modifiedAfter = watermark > 0 ? (watermark / 1000) * 1000 : -1;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#nextKeyValue()
+     */
+    @Override public boolean nextKeyValue() throws IOException, InterruptedException {
+        if (limit != null && limit.reached()) {
+            currentKey = null;
+            currentValue = null;
+            return false;
+        }
+
+        final boolean hasNext = next();
+        if (hasNext && limit != null) {
+            limit.emitted();
+        }
+        if (checkpoint != null) {
+            if (hasNext) {
+                // the mapper has finished with every key before this one
+                checkpoint.update(position - 1);
+            } else {
+                checkpoint.save(position);
+            }
+        }
+        if (!hasNext && CompletionLedger.isEnabled(conf)) {
+            CompletionLedger.completed(context, split);
+        }
+        return hasNext;
+    }
+
+    private boolean next() throws IOException, InterruptedException {
+        if (prefetch > 1) {
+            return nextPrefetched();
+        }
+
+        while ((currentKey = keys.poll()) != null) {
+            position++;
+            currentValue = readIfModified(currentKey);
+            if (currentValue != null) {
+                return true;
+            }
+        }
+
+        currentValue = null;
+        return false;
+    }
+
+    private boolean nextPrefetched() throws IOException, InterruptedException {
+        while (true) {
+            fill();
+            currentKey = pendingKeys.poll();
+
+            if (currentKey == null) {
+                currentValue = null;
+                return false;
+            }
+
+            position++;
+            Future<V> value = pendingValues.poll();
+            // top up before waiting, so the next reads overlap this one
+            fill();
+
+            try {
+                currentValue = value.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+
+            if (currentValue != null) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the value for <code>key</code>, or null if the job is
+     *         incremental and <code>key</code> hasn't been modified since the
+     *         watermark
+     */
+    private V readIfModified(BucketKey key) throws IOException, InterruptedException {
+        if (modifiedAfter >= 0 && !isModified(key)) {
+            return null;
+        }
+        return read(key);
+    }
+
+    /**
+     * @return true if any sibling of <code>key</code> was modified in or after
+     *         the second of the watermark, or has no last modified date
+     */
+    private boolean isModified(BucketKey key) throws IOException, InterruptedException {
+        for (IRiakObject o : getFetcher().head(key)) {
+            Date lastModified = o.getLastModified();
+            if (lastModified == null || lastModified.getTime() >= modifiedAfter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Start reads until there are <code>prefetch</code> in flight
+     */
+    private void fill() {
+        while (pendingKeys.size() < prefetch) {
+            final BucketKey key = keys.poll();
+
+            if (key == null) {
+                return;
+            }
+
+            pendingKeys.add(key);
+            pendingValues.add(getPrefetcher().submit(new Callable<V>() {
+                public V call() throws Exception {
+                    return readIfModified(key);
+                }
+            }));
+        }
+    }
+
+    private synchronized ExecutorService getPrefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newFixedThreadPool(prefetch, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "riak-prefetcher");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return prefetcher;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Client side rate limiter for the requests a task makes to Riak, so a batch
+ * job doesn't swamp a cluster that is also serving users.
+ * 
+ * The rate adapts AIMD style: it creeps up by a fixed number of ops/sec every
+ * second's worth of requests that come back faster than the latency target,
+ * and is cut by a multiple when a request fails or is slower than the target.
+ * It never goes above the task's share of the job's ops/sec budget. A task has
+ * one throttle, from {@link #forTask(TaskAttemptContext)}, for all its
+ * readers, writers and lookups.
+ * 
+ * A throttle with no budget and no latency target configured does nothing.
+ * 
+ * @author russell
+ * 
+ */
+public class AdaptiveThrottle {
+
+    private static final String MAP_SLOTS_PROPERTY = "mapred.tasktracker.map.tasks.maximum";
+    private static final String REDUCE_SLOTS_PROPERTY = "mapred.tasktracker.reduce.tasks.maximum";
+    private static final int DEFAULT_SLOTS = 2;
+    /**
+     * Weak, so a reused JVM drops the throttles of finished tasks
+     */
+    private static final Map<TaskAttemptID, AdaptiveThrottle> TASK_THROTTLES =
+        new WeakHashMap<TaskAttemptID, AdaptiveThrottle>();
+
+    private static final double MIN_RATE = 1;
+    private static final double INITIAL_RATE = 1000;
+    private static final double INCREASE = 10;
+    private static final double DECREASE_FACTOR = 0.5;
+    /**
+     * Only cut the rate once per interval, so a burst of slow responses
+     * from requests already in flight doesn't collapse it to the minimum
+     */
+    private static final long DECREASE_INTERVAL_NANOS = SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final double maxRate;
+    private final long latencyTargetNanos;
+    private double rate;
+    private long nextPermitNanos;
+    private long lastDecreaseNanos;
+
+    /**
+     * @param maxRate
+     *            the most ops/sec allowed, 0 for no limit
+     * @param latencyTargetMillis
+     *            back off when requests are slower than this, 0 to only back
+     *            off on errors
+     */
+    public AdaptiveThrottle(double maxRate, int latencyTargetMillis) {
+        this.enabled = maxRate > 0 || latencyTargetMillis > 0;
+        this.maxRate = maxRate > 0 ? maxRate : Double.MAX_VALUE;
+        this.latencyTargetNanos = latencyTargetMillis > 0 ? MILLISECONDS.toNanos(latencyTargetMillis) : Long.MAX_VALUE;
+        this.rate = Math.max(MIN_RATE, Math.min(this.maxRate, maxRate > 0 ? maxRate : INITIAL_RATE));
+        this.lastDecreaseNanos = System.nanoTime() - DECREASE_INTERVAL_NANOS;
+    }
+
+    /**
+     * @param context
+     *            the running task's context
+     * @return the throttle shared by all of the task's requests to Riak:
+     *         reads, writes and lookups
+     */
+    public static AdaptiveThrottle forTask(TaskAttemptContext context) {
+        final TaskAttemptID attempt = context.getTaskAttemptID();
+
+        synchronized (TASK_THROTTLES) {
+            AdaptiveThrottle throttle = TASK_THROTTLES.get(attempt);
+            if (throttle == null) {
+                throttle = create(context.getConfiguration(), attempt.isMap());
+                TASK_THROTTLES.put(attempt, throttle);
+            }
+            return throttle;
+        }
+    }
+
+    /**
+     * The job's budget is shared by every task slot of the running task's
+     * type in the hadoop cluster
+     */
+    static AdaptiveThrottle create(Configuration conf, boolean map) {
+        int budget = RiakConfig.getOpsPerSecondBudget(conf);
+        int slots = conf.getInt(map ? MAP_SLOTS_PROPERTY : REDUCE_SLOTS_PROPERTY, DEFAULT_SLOTS);
+        int tasks = Math.max(1, RiakConfig.getHadoopClusterSize(conf, 3) * slots);
+        double share = budget > 0 ? Math.max(MIN_RATE, (double) budget / tasks) : 0;
+        return new AdaptiveThrottle(share, RiakConfig.getThrottleLatencyTarget(conf));
+    }
+
+    /**
+     * Block until the current rate allows another request
+     * 
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permit = Math.max(now, nextPermitNanos);
+            nextPermitNanos = permit + (long) (SECONDS.toNanos(1) / rate);
+            wait = permit - now;
+        }
+
+        if (wait > 0) {
+            NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Record a successful request
+     * 
+     * @param nanos
+     *            how long it took
+     */
+    public synchronized void success(long nanos) {
+        if (!enabled) {
+            return;
+        }
+
+        if (nanos > latencyTargetNanos) {
+            decrease();
+        } else {
+            rate = Math.min(maxRate, rate + (INCREASE / rate));
+        }
+    }
+
+    /**
+     * Record a failed request
+     */
+    public synchronized void failure() {
+        if (enabled) {
+            decrease();
+        }
+    }
+
+    /**
+     * @return the current rate in ops/sec
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private void decrease() {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos >= DECREASE_INTERVAL_NANOS) {
+            rate = Math.max(MIN_RATE, rate * DECREASE_FACTOR);
+            lastDecreaseNanos = now;
+        }
+    }
+}
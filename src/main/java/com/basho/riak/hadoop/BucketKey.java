@@ -13,18 +13,44 @@
  */
 package com.basho.riak.hadoop;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 import org.codehaus.jackson.annotate.JsonCreator;
 
 /**
- * Models a bucket/key location in Riak.
+ * Models a bucket/key location in Riak. Immutable, so it is safe as a map key
+ * and to share between threads.
+ * 
+ * It can be serialized with {@link #write(DataOutput)} as the UTF-8 bytes of
+ * the bucket then the key, each prefixed with a VInt length (the same layout
+ * as {@link org.apache.hadoop.io.Text}), and read back with
+ * {@link #read(DataInput)}. It sorts by those bytes. To use a bucket/key as a
+ * map output key wrap it in a {@link BucketKeyWritable}.
  * 
  * @author russell
  * 
  */
-public class BucketKey {
+public class BucketKey implements Comparable<BucketKey> {
+
+    private static final String UTF8 = "UTF-8";
 
     private final String bucket;
     private final String key;
+    private final byte[] bucketBytes;
+    private final byte[] keyBytes;
+    /**
+     * Cached hash code, 0 means not yet computed
+     */
+    private int hash;
 
     /**
      * Provide a JSON constructor for Jackson.
@@ -33,12 +59,7 @@ public class BucketKey {
      *            a String[2] where [0] is the bucket and [1] is the key
      */
     @JsonCreator public BucketKey(String[] bucketKey) {
-        if (bucketKey == null || bucketKey.length != 2) {
-            throw new IllegalArgumentException("bucketKey must be a String[] of length 2");
-        }
-
-        this.bucket = bucketKey[0];
-        this.key = bucketKey[1];
+        this(checkLength(bucketKey)[0], bucketKey[1]);
     }
 
     /**
@@ -50,8 +71,43 @@ public class BucketKey {
      *            the key
      */
     public BucketKey(String bucket, String key) {
+        if (bucket == null || key == null) {
+            throw new IllegalArgumentException("bucket and key cannot be null");
+        }
         this.bucket = bucket;
         this.key = key;
+        this.bucketBytes = encode(bucket);
+        this.keyBytes = encode(key);
+    }
+
+    /**
+     * Create a bucket/key from its UTF-8 bytes, without copying them, so don't
+     * change the arrays after. The Riak client addresses objects by String, so
+     * the bytes must be valid UTF-8; anything else could never be fetched
+     * as is, and is rejected rather than silently mangled.
+     * 
+     * @param bucket
+     *            the UTF-8 bytes of the bucket
+     * @param key
+     *            the UTF-8 bytes of the key
+     * @throws IllegalArgumentException
+     *             if either is null or not valid UTF-8
+     */
+    public BucketKey(byte[] bucket, byte[] key) {
+        if (bucket == null || key == null) {
+            throw new IllegalArgumentException("bucket and key cannot be null");
+        }
+        this.bucket = decode(bucket);
+        this.key = decode(key);
+        this.bucketBytes = bucket;
+        this.keyBytes = key;
+    }
+
+    private static String[] checkLength(String[] bucketKey) {
+        if (bucketKey == null || bucketKey.length != 2) {
+            throw new IllegalArgumentException("bucketKey must be a String[] of length 2");
+        }
+        return bucketKey;
     }
 
     /**
@@ -68,16 +124,102 @@ public class BucketKey {
         return key;
     }
 
+    /**
+     * @return the UTF-8 bytes of the bucket. Not a copy, don't change it.
+     */
+    public byte[] getBucketBytes() {
+        return bucketBytes;
+    }
+
+    /**
+     * @return the UTF-8 bytes of the key. Not a copy, don't change it.
+     */
+    public byte[] getKeyBytes() {
+        return keyBytes;
+    }
+
+    private static byte[] encode(String s) {
+        try {
+            return s.getBytes(UTF8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(byte[] b) {
+        try {
+            // a fresh decoder reports malformed input, String(byte[]) would replace it
+            return Charset.forName(UTF8).newDecoder().decode(ByteBuffer.wrap(b)).toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("not valid UTF-8");
+        }
+    }
+
+    /**
+     * Write the bucket and key, see {@link #read(DataInput)}
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        writeBytes(out, bucketBytes);
+        writeBytes(out, keyBytes);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        WritableUtils.writeVInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a bucket/key written by {@link #write(DataOutput)}
+     * 
+     * @param in
+     * @return the {@link BucketKey}
+     * @throws IOException
+     *             if the input is short or the bytes are not valid UTF-8
+     */
+    public static BucketKey read(DataInput in) throws IOException {
+        byte[] b = new byte[WritableUtils.readVInt(in)];
+        in.readFully(b);
+        byte[] k = new byte[WritableUtils.readVInt(in)];
+        in.readFully(k);
+
+        try {
+            return new BucketKey(b, k);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad bucket/key: " + e.getMessage());
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(BucketKey other) {
+        int cmp = compare(bucketBytes, other.bucketBytes);
+        return cmp != 0 ? cmp : compare(keyBytes, other.keyBytes);
+    }
+
+    private static int compare(byte[] b1, byte[] b2) {
+        return WritableComparator.compareBytes(b1, 0, b1.length, b2, 0, b2.length);
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see java.lang.Object#hashCode()
      */
     @Override public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((bucket == null) ? 0 : bucket.hashCode());
-        result = prime * result + ((key == null) ? 0 : key.hashCode());
+        int result = hash;
+        if (result == 0) {
+            final int prime = 31;
+            result = 1;
+            result = prime * result + Arrays.hashCode(bucketBytes);
+            result = prime * result + Arrays.hashCode(keyBytes);
+            hash = result;
+        }
         return result;
     }
 
@@ -97,21 +239,10 @@ public class BucketKey {
             return false;
         }
         BucketKey other = (BucketKey) obj;
-        if (bucket == null) {
-            if (other.bucket != null) {
-                return false;
-            }
-        } else if (!bucket.equals(other.bucket)) {
+        if (hashCode() != other.hashCode()) {
             return false;
         }
-        if (key == null) {
-            if (other.key != null) {
-                return false;
-            }
-        } else if (!key.equals(other.key)) {
-            return false;
-        }
-        return true;
+        return Arrays.equals(bucketBytes, other.bucketBytes) && Arrays.equals(keyBytes, other.keyBytes);
     }
 
     /*
@@ -122,5 +253,4 @@ public class BucketKey {
     @Override public String toString() {
         return String.format("BucketKey [bucket=%s, key=%s]", bucket, key);
     }
-
 }
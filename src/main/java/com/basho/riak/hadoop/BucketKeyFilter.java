@@ -0,0 +1,258 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+
+import com.basho.riak.client.RiakException;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.keylisters.KeyLister;
+
+/**
+ * A Bloom filter of {@link BucketKey}s for semi-joins: build it from the keys
+ * of another dataset, attach it to the job with
+ * {@link #attach(Configuration, Path)}, and {@link RiakInputFormat} drops
+ * every listed key that can't be in the filter while planning splits, so those
+ * keys never cost a fetch. A small fraction of keys that aren't in the other
+ * dataset (the false positive rate) still get through, so the mapper should
+ * still check if it needs an exact join.
+ * 
+ * @author russell
+ * 
+ */
+public class BucketKeyFilter implements Writable {
+
+    private BloomFilter bloom;
+
+    public BucketKeyFilter() {}
+
+    /**
+     * @param expectedKeys
+     *            roughly how many keys will be added
+     * @param falsePositiveRate
+     *            the fraction of keys not added that may still pass the
+     *            filter, e.g. 0.01
+     */
+    public BucketKeyFilter(int expectedKeys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        final int n = Math.max(1, expectedKeys);
+        final int bits = (int) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        final int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        this.bloom = new BloomFilter(bits, hashes, Hash.MURMUR_HASH);
+    }
+
+    /**
+     * @param key
+     *            a key to let through the filter
+     */
+    public void add(BucketKey key) {
+        bloom.add(toBloomKey(key));
+    }
+
+    /**
+     * @param key
+     *            a key to test
+     * @return false if <code>key</code> was definitely not added, true if it
+     *         may have been
+     */
+    public boolean mightContain(BucketKey key) {
+        return bloom.membershipTest(toBloomKey(key));
+    }
+
+    /**
+     * @param keys
+     *            the keys to filter
+     * @return a new list of the keys in <code>keys</code> that pass the
+     *         filter, in order
+     */
+    public List<BucketKey> filter(List<BucketKey> keys) {
+        final List<BucketKey> passed = new ArrayList<BucketKey>();
+
+        for (BucketKey key : keys) {
+            if (mightContain(key)) {
+                passed.add(key);
+            }
+        }
+
+        return passed;
+    }
+
+    /**
+     * The bucket length first, so "a"/"bc" and "ab"/"c" differ
+     */
+    private static Key toBloomKey(BucketKey key) {
+        final byte[] bucket = key.getBucketBytes();
+        final byte[] k = key.getKeyBytes();
+        final byte[] bytes = new byte[4 + bucket.length + k.length];
+
+        bytes[0] = (byte) (bucket.length >>> 24);
+        bytes[1] = (byte) (bucket.length >>> 16);
+        bytes[2] = (byte) (bucket.length >>> 8);
+        bytes[3] = (byte) bucket.length;
+        System.arraycopy(bucket, 0, bytes, 4, bucket.length);
+        System.arraycopy(k, 0, bytes, 4 + bucket.length, k.length);
+
+        return new Key(bytes);
+    }
+
+    /**
+     * Build a filter from a text file with one <code>bucket\tkey</code> per
+     * line
+     * 
+     * @param conf
+     *            the {@link Configuration} for the file system
+     * @param keyFile
+     *            the file of keys
+     * @param expectedKeys
+     *            roughly how many lines the file has
+     * @param falsePositiveRate
+     *            the false positive rate
+     * @return the filter
+     * @throws IOException
+     *             if the file can't be read or a line has no tab
+     */
+    public static BucketKeyFilter fromKeyFile(Configuration conf, Path keyFile, int expectedKeys,
+                                              double falsePositiveRate) throws IOException {
+        final BucketKeyFilter filter = new BucketKeyFilter(expectedKeys, falsePositiveRate);
+        final InputStream in = keyFile.getFileSystem(conf).open(keyFile);
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab == -1) {
+                    throw new IOException("Expected bucket<TAB>key, got " + line);
+                }
+                filter.add(new BucketKey(line.substring(0, tab), line.substring(tab + 1)));
+            }
+        } finally {
+            reader.close();
+        }
+
+        return filter;
+    }
+
+    /**
+     * Build a filter from the keys of a {@link KeyLister}
+     * 
+     * @param locations
+     *            the Riak locations to list keys from
+     * @param keyLister
+     *            lists the keys to let through
+     * @param falsePositiveRate
+     *            the false positive rate
+     * @return the filter
+     * @throws IOException
+     *             if listing fails at every location
+     */
+    public static BucketKeyFilter fromKeyLister(RiakLocation[] locations, KeyLister keyLister,
+                                                double falsePositiveRate) throws IOException {
+        try {
+            final List<BucketKey> keys = RiakInputFormat.getKeys(locations, keyLister, 0);
+            final BucketKeyFilter filter = new BucketKeyFilter(keys.size(), falsePositiveRate);
+            for (BucketKey key : keys) {
+                filter.add(key);
+            }
+            return filter;
+        } catch (RiakException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Write this filter to <code>path</code> and have the job with
+     * <code>conf</code> apply it when planning splits
+     * 
+     * @param conf
+     *            the job {@link Configuration}
+     * @param path
+     *            where to store the filter
+     * @throws IOException
+     */
+    public void attach(Configuration conf, Path path) throws IOException {
+        final FSDataOutputStream out = path.getFileSystem(conf).create(path, true);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+        RiakConfig.setKeyFilterPath(conf, path);
+    }
+
+    /**
+     * @param conf
+     *            the job {@link Configuration}
+     * @return the filter attached to the job, or null if there isn't one
+     * @throws IOException
+     */
+    public static BucketKeyFilter get(Configuration conf) throws IOException {
+        final Path path = RiakConfig.getKeyFilterPath(conf);
+
+        if (path == null) {
+            return null;
+        }
+
+        final FileSystem fs = path.getFileSystem(conf);
+        final FSDataInputStream in = fs.open(path);
+        try {
+            BucketKeyFilter filter = new BucketKeyFilter();
+            filter.readFields(in);
+            return filter;
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+     */
+    public void write(DataOutput out) throws IOException {
+        bloom.write(out);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+     */
+    public void readFields(DataInput in) throws IOException {
+        bloom = new BloomFilter();
+        bloom.readFields(in);
+    }
+}
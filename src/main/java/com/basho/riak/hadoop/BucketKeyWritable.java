@@ -0,0 +1,187 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A reusable {@link WritableComparable} holder for a {@link BucketKey}, so a
+ * bucket/key can be a map output key. It is serialized in the
+ * {@link BucketKey} layout and sorts the same way. A byte level
+ * {@link Comparator} is registered so the shuffle doesn't have to deserialize
+ * keys to sort them.
+ * 
+ * @author russell
+ * 
+ */
+public class BucketKeyWritable implements WritableComparable<BucketKeyWritable> {
+
+    static {
+        WritableComparator.define(BucketKeyWritable.class, new Comparator());
+    }
+
+    private BucketKey bucketKey;
+
+    /**
+     * For hadoop, populate with {@link #readFields(DataInput)}
+     */
+    public BucketKeyWritable() {}
+
+    /**
+     * @param bucketKey
+     *            the {@link BucketKey} to hold
+     */
+    public BucketKeyWritable(BucketKey bucketKey) {
+        set(bucketKey);
+    }
+
+    /**
+     * @param bucketKey
+     *            the {@link BucketKey} to hold
+     */
+    public void set(BucketKey bucketKey) {
+        if (bucketKey == null) {
+            throw new IllegalArgumentException("bucketKey cannot be null");
+        }
+        this.bucketKey = bucketKey;
+    }
+
+    /**
+     * @return the {@link BucketKey} held
+     */
+    public BucketKey get() {
+        return bucketKey;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+     */
+    public void write(DataOutput out) throws IOException {
+        bucketKey.write(out);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+     */
+    public void readFields(DataInput in) throws IOException {
+        bucketKey = BucketKey.read(in);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(BucketKeyWritable other) {
+        return bucketKey.compareTo(other.bucketKey);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override public int hashCode() {
+        return bucketKey == null ? 0 : bucketKey.hashCode();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BucketKeyWritable)) {
+            return false;
+        }
+        BucketKeyWritable other = (BucketKeyWritable) obj;
+        return bucketKey == null ? other.bucketKey == null : bucketKey.equals(other.bucketKey);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override public String toString() {
+        return String.valueOf(bucketKey);
+    }
+
+    /**
+     * Raw comparator that orders serialized records by bucket then key. Works
+        /**
+         * @param type
+    /**
+     * Raw comparator that orders serialized records by bucket then key. Works
+     * for any record that starts with a bucket and key in the
+     * {@link BucketKey} layout.
+     */
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(BucketKeyWritable.class);
+        }
+
+        /**
+         * @param type
+         *            the {@link WritableComparable} being compared
+         */
+        protected Comparator(Class<? extends WritableComparable<?>> type) {
+            super(type);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.io.WritableComparator#compare(byte[], int,
+         * int, byte[], int, int)
+         */
+        @Override public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                int bucketLength1 = readVInt(b1, s1);
+                int bucketLength2 = readVInt(b2, s2);
+                int bucketStart1 = s1 + WritableUtils.decodeVIntSize(b1[s1]);
+                int bucketStart2 = s2 + WritableUtils.decodeVIntSize(b2[s2]);
+
+                int cmp = compareBytes(b1, bucketStart1, bucketLength1, b2, bucketStart2, bucketLength2);
+                if (cmp != 0) {
+                    return cmp;
+                }
+
+                int keyStart1 = bucketStart1 + bucketLength1;
+                int keyStart2 = bucketStart2 + bucketLength2;
+                int keyLength1 = readVInt(b1, keyStart1);
+                int keyLength2 = readVInt(b2, keyStart2);
+
+                return compareBytes(b1, keyStart1 + WritableUtils.decodeVIntSize(b1[keyStart1]), keyLength1, b2,
+                                    keyStart2 + WritableUtils.decodeVIntSize(b2[keyStart2]), keyLength2);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+}
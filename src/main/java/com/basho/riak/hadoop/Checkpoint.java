@@ -0,0 +1,222 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * How far through its split a map task has got, so a retried attempt of the
+ * task can skip the keys the failed attempt already mapped.
+ * 
+ * The offset is the number of keys whose records have been handed to the
+ * mapper and mapped: the record the mapper is working on isn't counted until
+ * it asks for the next one. That is only a safe point to resume from if the
+ * mapper's output can't be lost with the failed attempt, so checkpoints are
+ * only allowed for map only jobs that write to Riak with
+ * {@link RiakOutputFormat} (whose writes are never rolled back) and don't run
+ * a {@link MultithreadedRiakMapper} (which maps records out of order) or a
+ * {@link RiakBatchMapper} (which buffers records to map later).
+ * 
+ * @author russell
+ * 
+ */
+public class Checkpoint {
+
+    private static final String OUTPUT_FORMAT_PROPERTY = "mapreduce.outputformat.class";
+    private static final String MAPPER_PROPERTY = "mapreduce.map.class";
+    private static final int CHECKPOINT_LENGTH = 8;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final FileSystem fs;
+    private final Path file;
+    private final Path temp;
+    private final long intervalMillis;
+    private long nextUpdate = 0;
+    private long written = -1;
+
+    /**
+     * @param fs
+     *            the file system for the checkpoint
+     * @param file
+     *            the checkpoint file
+     * @param attempt
+     *            the id of the task attempt, names its temp file so
+     *            speculative attempts don't write over each other's
+     * @param intervalMillis
+     *            the least time between checkpoints
+     */
+    public Checkpoint(FileSystem fs, Path file, String attempt, long intervalMillis) {
+        this.fs = fs;
+        this.file = file;
+        this.temp = new Path(file.getParent(), file.getName() + "." + attempt + TEMP_SUFFIX);
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param context
+     *            the map task's context
+     * @return the checkpoint for the task, or null if the job doesn't
+     *         checkpoint
+     * @throws IOException
+     *             if checkpoints are on for a job that can't use them
+     */
+    public static Checkpoint get(TaskAttemptContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final int interval = RiakConfig.getCheckpointInterval(conf);
+
+        if (interval <= 0) {
+            return null;
+        }
+
+        checkDurableOutput(context, "Checkpoints");
+
+        final Path file = new Path(new Path(RiakConfig.getJobDirectory(conf, context.getJobID().toString()),
+                                            "checkpoints"), context.getTaskAttemptID().getTaskID().toString());
+        return new Checkpoint(file.getFileSystem(conf), file, context.getTaskAttemptID().toString(),
+                              interval * 1000L);
+    }
+
+    /**
+     * Check the job's mapped output can't be lost with a failed attempt: it
+     * is map only, writes with {@link RiakOutputFormat} and maps each record,
+     * in order, before asking for the next
+     * 
+     * @param context
+     *            the job's context
+     * @param feature
+     *            what needs the check, for the error message
+     * @throws IOException
+     *             if the job's output isn't durable
+     */
+    static void checkDurableOutput(JobContext context, String feature) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final Class<?> outputFormat = conf.getClass(OUTPUT_FORMAT_PROPERTY, null);
+        final Class<?> mapper = conf.getClass(MAPPER_PROPERTY, null);
+
+        if (context.getNumReduceTasks() != 0 || outputFormat == null
+            || !RiakOutputFormat.class.isAssignableFrom(outputFormat)) {
+            throw new IOException(feature + " need a map only job with RiakOutputFormat");
+        }
+        if (mapper != null
+            && (MultithreadedRiakMapper.class.isAssignableFrom(mapper)
+                || RiakBatchMapper.class.isAssignableFrom(mapper))) {
+            throw new IOException(feature + " can't be used with " + mapper.getName()
+                                  + ", it doesn't map each record before reading the next");
+        }
+    }
+
+    /**
+     * @return the furthest offset saved by an earlier (or speculative)
+     *         attempt, 0 if there isn't one
+     * @throws IOException
+     */
+    public long restore() throws IOException {
+        final String prefix = file.getName();
+        long offset = 0;
+
+        if (fs.exists(file.getParent())) {
+            final FileStatus[] files = fs.listStatus(file.getParent());
+            for (FileStatus status : files == null ? new FileStatus[0] : files) {
+                String name = status.getPath().getName();
+                // a temp file is only complete if its attempt died between the delete and the rename
+                boolean saved = name.equals(prefix)
+                                || (name.startsWith(prefix + ".") && name.endsWith(TEMP_SUFFIX)
+                                    && status.getLen() == CHECKPOINT_LENGTH);
+                if (saved) {
+                    offset = Math.max(offset, read(status.getPath()));
+                }
+            }
+        }
+
+        written = offset;
+        return offset;
+    }
+
+    private long read(Path path) throws IOException {
+        final FSDataInputStream in = fs.open(path);
+        try {
+            return in.readLong();
+        } catch (EOFException e) {
+            // being written by a speculative attempt
+            return 0;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Save <code>offset</code>, if it has been long enough since the last
+     * checkpoint
+     * 
+     * @param offset
+     *            the number of keys mapped
+     * @throws IOException
+     */
+    public void update(long offset) throws IOException {
+        final long now = System.currentTimeMillis();
+
+        if (now >= nextUpdate) {
+            save(offset);
+            nextUpdate = now + intervalMillis;
+        }
+    }
+
+    /**
+     * Save <code>offset</code> now
+     * 
+     * @param offset
+     *            the number of keys mapped
+     * @throws IOException
+     */
+    public void save(long offset) throws IOException {
+        if (offset == written) {
+            return;
+        }
+
+        // a speculative attempt got further, its output is just as durable
+        if (fs.exists(file) && read(file) > offset) {
+            written = offset;
+            return;
+        }
+
+        // write then rename, so there's always a complete checkpoint
+        final FSDataOutputStream out = fs.create(temp, true);
+        try {
+            out.writeLong(offset);
+        } finally {
+            out.close();
+        }
+        fs.delete(file, false);
+        if (!fs.rename(temp, file)) {
+            // a speculative attempt got there first, fine if it is further on
+            if (!fs.exists(file) || read(file) < offset) {
+                throw new IOException("Could not save checkpoint " + file);
+            }
+            fs.delete(temp, false);
+        }
+        written = offset;
+    }
+}
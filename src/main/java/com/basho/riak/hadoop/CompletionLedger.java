@@ -0,0 +1,219 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * The record of which splits of a job have been committed, so a job that
+ * failed late can be resubmitted and only read what it hadn't finished.
+ * 
+ * A record reader that reads the whole of its split writes the split to a
+ * pending file for its attempt, which {@link RiakOutputCommitter} moves into
+ * the ledger when the task commits. When the job is resubmitted with
+ * {@link RiakConfig#setResume(Configuration, boolean)}
+ * {@link RiakInputFormat} drops every key in the ledger before it plans the
+ * splits. Keys are dropped, rather than whole splits, as key listing order
+ * (and so the splits) can change between runs. A run that isn't resuming
+ * starts a fresh ledger, and a job that succeeds deletes it.
+ * 
+ * Hadoop job ids change on resubmission, so ledgers are named by the job, see
+ * {@link RiakConfig#setCompletionLedger(Configuration, String)}. Skipping a
+ * split is only safe if its output survived the failed run, so ledgers need
+ * the same map only, {@link RiakOutputFormat} job as {@link Checkpoint}s.
+ * {@link RiakIndexInputFormat} can't keep a ledger, as one key can have
+ * entries in more than one split.
+ * 
+ * @author russell
+ * 
+ */
+public final class CompletionLedger {
+
+    private static final String PENDING = "pending";
+    private static final String DONE = "done";
+
+    private CompletionLedger() {}
+
+    /**
+     * @param conf
+     *            the job {@link Configuration}
+     * @return true if the job keeps a ledger
+     */
+    public static boolean isEnabled(Configuration conf) {
+        return RiakConfig.getCompletionLedger(conf) != null;
+    }
+
+    /**
+     * @param conf
+     *            the job {@link Configuration}
+     * @return the directory holding the job's ledger
+     */
+    static Path getDirectory(Configuration conf) {
+        return new Path(new Path(RiakConfig.getWorkingDirectory(conf), "ledgers"),
+                        RiakConfig.getCompletionLedger(conf));
+    }
+
+    /**
+     * Called while planning splits. If the job is resuming, drop the keys of
+     * splits committed by earlier runs from <code>keys</code>, otherwise clear
+     * the ledger for a new run.
+     * 
+     * @param context
+     *            the job's context
+     * @param keys
+     *            the job's input
+     * @return the input left to read
+     * @throws IOException
+     */
+    public static List<BucketKey> begin(JobContext context, List<BucketKey> keys) throws IOException {
+        Checkpoint.checkDurableOutput(context, "Completion ledgers");
+
+        final Configuration conf = context.getConfiguration();
+        final Path dir = getDirectory(conf);
+        final FileSystem fs = dir.getFileSystem(conf);
+
+        if (!RiakConfig.isResume(conf)) {
+            fs.delete(dir, true);
+            return keys;
+        }
+
+        final FileStatus[] files = fs.listStatus(new Path(dir, DONE));
+        if (files == null || files.length == 0) {
+            return keys;
+        }
+
+        final Set<BucketKey> done = new HashSet<BucketKey>();
+        for (FileStatus file : files) {
+            done.addAll(read(fs, file.getPath()).getInputs());
+        }
+
+        final List<BucketKey> remaining = new ArrayList<BucketKey>(keys.size());
+        for (BucketKey key : keys) {
+            if (!done.contains(key)) {
+                remaining.add(key);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Record that the task has read the whole of <code>split</code>. It isn't
+     * in the ledger until the task commits.
+     * 
+     * @param context
+     *            the task's context
+     * @param split
+     *            the task's split
+     * @throws IOException
+     */
+    public static void completed(TaskAttemptContext context, RiakInputSplit split) throws IOException {
+        final Path pending = getPending(context);
+        final FSDataOutputStream out = pending.getFileSystem(context.getConfiguration()).create(pending, true);
+        try {
+            split.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param context
+     *            the task's context
+     * @return true if the task has a completed split to commit
+     * @throws IOException
+     */
+    public static boolean hasPending(TaskAttemptContext context) throws IOException {
+        final Path pending = getPending(context);
+        return pending.getFileSystem(context.getConfiguration()).exists(pending);
+    }
+
+    /**
+     * Move the task's completed split into the ledger
+     * 
+     * @param context
+     *            the task's context
+     * @throws IOException
+     */
+    public static void commitTask(TaskAttemptContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final Path pending = getPending(context);
+        final FileSystem fs = pending.getFileSystem(conf);
+
+        if (!fs.exists(pending)) {
+            return;
+        }
+
+        final Path done = new Path(getDirectory(conf), DONE);
+        fs.mkdirs(done);
+        if (!fs.rename(pending, new Path(done, pending.getName()))) {
+            throw new IOException("Could not commit " + pending + " to the ledger");
+        }
+    }
+
+    /**
+     * Drop the task's pending split
+     * 
+     * @param context
+     *            the task's context
+     * @throws IOException
+     */
+    public static void abortTask(TaskAttemptContext context) throws IOException {
+        final Path pending = getPending(context);
+        pending.getFileSystem(context.getConfiguration()).delete(pending, false);
+    }
+
+    /**
+     * The job succeeded, there is nothing to resume
+     * 
+     * @param context
+     *            the job's context
+     * @throws IOException
+     */
+    public static void commitJob(JobContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final Path dir = getDirectory(conf);
+        dir.getFileSystem(conf).delete(dir, true);
+    }
+
+    private static Path getPending(TaskAttemptContext context) {
+        return new Path(new Path(getDirectory(context.getConfiguration()), PENDING),
+                        context.getTaskAttemptID().toString());
+    }
+
+    private static RiakInputSplit read(FileSystem fs, Path file) throws IOException {
+        final RiakInputSplit split = new RiakInputSplit();
+        final FSDataInputStream in = fs.open(file);
+        try {
+            split.readFields(in);
+        } finally {
+            in.close();
+        }
+        return split;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Stops a job's record readers once, between them, they have emitted the
+ * job's input limit. Each task publishes its count as the name of an empty
+ * file in a coordination directory under
+ * {@link RiakConfig#getWorkingDirectory(Configuration)}, so checking the
+ * job's total is a single directory listing. Counts are published and checked
+ * at most once a second, so a job may overshoot the limit by what its readers
+ * emit in that time, and a single reader never emits more than the limit.
+ * 
+ * Counts are kept per task, not per attempt, and the highest count for a task
+ * wins, so a retried attempt isn't counted on top of the one that failed.
+ * 
+ * @author russell
+ * 
+ */
+public class InputLimit {
+
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+    private static final char SEPARATOR = '-';
+
+    private final long limit;
+    private final FileSystem fs;
+    private final Path dir;
+    private final String task;
+    private long emitted = 0;
+    private Path published;
+    private long nextCheck = 0;
+    private boolean reached = false;
+
+    /**
+     * @param limit
+     *            the most records the job should read
+     * @param fs
+     *            the file system for the coordination directory
+     * @param dir
+     *            the coordination directory
+     * @param task
+     *            the id of this task
+     */
+    public InputLimit(long limit, FileSystem fs, Path dir, String task) {
+        this.limit = limit;
+        this.fs = fs;
+        this.dir = dir;
+        this.task = task;
+    }
+
+    /**
+     * @param context
+     *            the task's context
+     * @return the limit for the task's job, or null if it doesn't have one
+     * @throws IOException
+     */
+    public static InputLimit get(TaskAttemptContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final long limit = RiakConfig.getInputLimit(conf);
+
+        if (limit <= 0) {
+            return null;
+        }
+
+        final Path dir = getDirectory(conf, context.getJobID().toString());
+        return new InputLimit(limit, dir.getFileSystem(conf), dir,
+                              context.getTaskAttemptID().getTaskID().toString());
+    }
+
+    /**
+     * @return the coordination directory for the job with <code>jobId</code>
+     */
+    static Path getDirectory(Configuration conf, String jobId) {
+        return new Path(RiakConfig.getJobDirectory(conf, jobId), "limit");
+    }
+
+    /**
+     * Count a record
+     */
+    public void emitted() {
+        emitted++;
+    }
+
+    /**
+     * @return true if the job has read its limit and the reader should stop
+     * @throws IOException
+     */
+    public boolean reached() throws IOException {
+        if (!reached && emitted >= limit) {
+            reached = true;
+            publish();
+        }
+
+        final long now = System.currentTimeMillis();
+        if (!reached && now >= nextCheck) {
+            publish();
+            reached = total() >= limit;
+            nextCheck = now + CHECK_INTERVAL_MILLIS;
+        }
+
+        return reached;
+    }
+
+    /**
+     * Publish the final count
+     * 
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        publish();
+    }
+
+    private void publish() throws IOException {
+        final Path current = new Path(dir, task + SEPARATOR + emitted);
+
+        if (current.equals(published)) {
+            return;
+        }
+
+        fs.create(current, true).close();
+        if (published != null) {
+            fs.delete(published, false);
+        }
+        published = current;
+    }
+
+    /**
+     * @return the sum of the latest count of every task
+     */
+    long total() throws IOException {
+        final FileStatus[] files = fs.listStatus(dir);
+        final Map<String, Long> counts = new HashMap<String, Long>();
+
+        if (files != null) {
+            for (FileStatus file : files) {
+                String name = file.getPath().getName();
+                int separator = name.lastIndexOf(SEPARATOR);
+                if (separator == -1) {
+                    continue;
+                }
+                try {
+                    String id = name.substring(0, separator);
+                    Long count = Long.valueOf(name.substring(separator + 1));
+                    Long previous = counts.get(id);
+                    if (previous == null || previous < count) {
+                        counts.put(id, count);
+                    }
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+
+        long total = 0;
+        for (Long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.hash.Hash;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Samples the keys of a job while its splits are planned, so only the sample
+ * is fetched.
+ * 
+ * Whether a key is in the sample depends only on a seeded hash of its bucket
+ * and key, not on the order or number of keys listed, so the same seed gives
+ * the same sample on every run, and a fraction sample of a bucket is also a
+ * fraction sample of any range or index query over it. A fixed size sample is
+ * the keys with the smallest hashes.
+ * 
+ * @author russell
+ * 
+ */
+public final class KeySampler {
+
+    private static final Hash HASH = Hash.getInstance(Hash.MURMUR_HASH);
+    private static final double TWO_TO_THE_32 = 4294967296.0;
+
+    private KeySampler() {}
+
+    /**
+     * @param conf
+     *            the job {@link Configuration}
+     * @return true if the job has a sample fraction or size set
+     */
+    public static boolean isSampling(Configuration conf) {
+        return RiakConfig.getSampleFraction(conf) < 1 || RiakConfig.getSampleSize(conf) > 0;
+    }
+
+    /**
+     * Apply the job's sample settings to <code>keys</code>
+     * 
+     * @param conf
+     *            the job {@link Configuration}
+     * @param keys
+     *            the listed keys
+     * @return the sampled keys, in <code>keys</code> order, or
+     *         <code>keys</code> if the job isn't sampling
+     */
+    public static List<BucketKey> sample(Configuration conf, List<BucketKey> keys) {
+        final long seed = RiakConfig.getSampleSeed(conf);
+        final int size = RiakConfig.getSampleSize(conf);
+        final double fraction = RiakConfig.getSampleFraction(conf);
+        List<BucketKey> sample = keys;
+
+        if (fraction < 1) {
+            sample = sample(sample, fraction, seed);
+        }
+        if (size > 0) {
+            sample = sample(sample, size, seed);
+        }
+
+        return sample;
+    }
+
+    /**
+     * @param keys
+     *            the keys to sample
+     * @param fraction
+     *            the fraction of keys to keep, between 0 and 1
+     * @param seed
+     *            the seed
+     * @return a new list of about <code>fraction</code> of <code>keys</code>,
+     *         in order
+     */
+    public static List<BucketKey> sample(List<BucketKey> keys, double fraction, long seed) {
+        final long threshold = (long) (fraction * TWO_TO_THE_32);
+        final List<BucketKey> sample = new ArrayList<BucketKey>((int) (keys.size() * fraction) + 1);
+
+        for (BucketKey key : keys) {
+            if (hash(key, seed) < threshold) {
+                sample.add(key);
+            }
+        }
+
+        return sample;
+    }
+
+    /**
+     * @param keys
+     *            the keys to sample
+     * @param size
+     *            the number of keys to keep
+     * @param seed
+     *            the seed
+     * @return a new list of <code>size</code> of <code>keys</code> (or all of
+     *         them if there are fewer), in order
+     */
+    public static List<BucketKey> sample(List<BucketKey> keys, int size, long seed) {
+        if (keys.size() <= size) {
+            return new ArrayList<BucketKey>(keys);
+        }
+
+        // largest hash first, so the head is the one to drop
+        final Comparator<Sampled> byHash = new Comparator<Sampled>() {
+            public int compare(Sampled o1, Sampled o2) {
+                return o1.hash < o2.hash ? -1 : (o1.hash == o2.hash ? 0 : 1);
+            }
+        };
+        final PriorityQueue<Sampled> smallest = new PriorityQueue<Sampled>(size + 1, Collections.reverseOrder(byHash));
+
+        for (BucketKey key : keys) {
+            smallest.add(new Sampled(key, hash(key, seed)));
+            if (smallest.size() > size) {
+                smallest.poll();
+            }
+        }
+
+        final Set<BucketKey> selected = new HashSet<BucketKey>(size * 2);
+        for (Sampled s : smallest) {
+            selected.add(s.key);
+        }
+
+        final List<BucketKey> sample = new ArrayList<BucketKey>(size);
+        for (BucketKey key : keys) {
+            if (selected.remove(key)) {
+                sample.add(key);
+            }
+        }
+
+        return sample;
+    }
+
+    /**
+     * @return the seeded hash of <code>key</code> as an unsigned 32 bit value
+     */
+    static long hash(BucketKey key, long seed) {
+        final byte[] bucket = key.getBucketBytes();
+        final byte[] k = key.getKeyBytes();
+        final int h = HASH.hash(bucket, bucket.length, (int) (seed ^ (seed >>> 32)));
+        return HASH.hash(k, k.length, h) & 0xffffffffL;
+    }
+
+    private static final class Sampled {
+        private final BucketKey key;
+        private final long hash;
+
+        private Sampled(BucketKey key, long hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+}
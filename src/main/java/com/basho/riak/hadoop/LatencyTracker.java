@@ -0,0 +1,87 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a window of the most recent request latencies so a percentile can be
+ * used as the delay before sending a hedged request.
+ * 
+ * @author russell
+ * 
+ */
+public class LatencyTracker {
+
+    private static final int DEFAULT_WINDOW = 1000;
+    /**
+     * Don't report a percentile until we have this many samples
+     */
+    private static final int MIN_SAMPLES = 20;
+    /**
+     * Re-sort the window after this many new samples
+     */
+    private static final int RECALCULATE_EVERY = 50;
+
+    private final long[] samples;
+    private int count = 0;
+    private int next = 0;
+    private int sinceSorted = 0;
+    private long[] sorted = null;
+
+    public LatencyTracker() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window
+     *            the number of recent samples to keep
+     */
+    public LatencyTracker(int window) {
+        this.samples = new long[window];
+    }
+
+    /**
+     * @param nanos
+     *            the latency of a request
+     */
+    public synchronized void add(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceSorted++;
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 100
+     * @return the latency in nanos at <code>percentile</code>, or -1 if there
+     *         aren't enough samples yet
+     */
+    public synchronized long percentile(float percentile) {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+
+        if (sorted == null || sinceSorted >= RECALCULATE_EVERY) {
+            sorted = new long[count];
+            System.arraycopy(samples, 0, sorted, 0, count);
+            Arrays.sort(sorted);
+            sinceSorted = 0;
+        }
+
+        int index = (int) Math.ceil((percentile / 100) * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
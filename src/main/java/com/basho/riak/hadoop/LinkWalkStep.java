@@ -0,0 +1,132 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.basho.riak.client.RiakLink;
+
+/**
+ * One hop of a link walk, as in a Riak link phase: follow the links with
+ * matching bucket and tag, and keep the objects they lead to if
+ * <code>keep</code> is true. A bucket or tag of {@link #ANY} matches anything.
+ * 
+ * @author russell
+ * 
+ */
+public class LinkWalkStep {
+
+    /**
+     * Matches any bucket or tag
+     */
+    public static final String ANY = "_";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String BUCKET = "bucket";
+    private static final String TAG = "tag";
+    private static final String KEEP = "keep";
+
+    private final String bucket;
+    private final String tag;
+    private final boolean keep;
+
+    /**
+     * @param bucket
+     *            the bucket to follow links to, null or {@link #ANY} for any
+     * @param tag
+     *            the tag of links to follow, null or {@link #ANY} for any
+     * @param keep
+     *            whether the mapper gets the objects this step reaches
+     */
+    public LinkWalkStep(String bucket, String tag, boolean keep) {
+        this.bucket = bucket == null ? ANY : bucket;
+        this.tag = tag == null ? ANY : tag;
+        this.keep = keep;
+    }
+
+    /**
+     * @return the bucket
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    /**
+     * @return the tag
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return true if the objects this step reaches are kept
+     */
+    public boolean isKeep() {
+        return keep;
+    }
+
+    /**
+     * @param link
+     *            a link from an object reached by the previous step
+     * @return true if this step follows <code>link</code>
+     */
+    public boolean matches(RiakLink link) {
+        return (ANY.equals(bucket) || bucket.equals(link.getBucket()))
+               && (ANY.equals(tag) || tag.equals(link.getTag()));
+    }
+
+    /**
+     * @param steps
+     *            the steps
+     * @return <code>steps</code> as a JSON String
+     * @throws IOException
+     */
+    public static String toJSON(List<LinkWalkStep> steps) throws IOException {
+        final List<Map<String, Object>> json = new ArrayList<Map<String, Object>>(steps.size());
+
+        for (LinkWalkStep step : steps) {
+            final Map<String, Object> s = new HashMap<String, Object>();
+            s.put(BUCKET, step.bucket);
+            s.put(TAG, step.tag);
+            s.put(KEEP, step.keep);
+            json.add(s);
+        }
+
+        return OBJECT_MAPPER.writeValueAsString(json);
+    }
+
+    /**
+     * @param json
+     *            a String from {@link #toJSON(List)}
+     * @return the steps
+     * @throws IOException
+     */
+    @SuppressWarnings("rawtypes") public static List<LinkWalkStep> fromJSON(String json) throws IOException {
+        final List<LinkWalkStep> steps = new ArrayList<LinkWalkStep>();
+
+        for (Object o : OBJECT_MAPPER.readValue(json, List.class)) {
+            Map s = (Map) o;
+            steps.add(new LinkWalkStep((String) s.get(BUCKET), (String) s.get(TAG), Boolean.TRUE.equals(s.get(KEEP))));
+        }
+
+        return steps;
+    }
+}
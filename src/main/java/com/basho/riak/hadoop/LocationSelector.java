@@ -0,0 +1,279 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static com.basho.riak.hadoop.config.ClientFactory.getRawClient;
+
+import java.io.IOException;
+
+import com.basho.riak.client.raw.RawClient;
+import com.basho.riak.hadoop.config.RiakLocation;
+
+/**
+ * Picks which of a split's candidate {@link RiakLocation}s the
+ * {@link RiakRecordReader} should send its next request to.
+ * 
+ * The reader sticks with the preferred location (so the load planned by
+ * {@link RiakInputFormat} stays spread across the cluster) unless it fails,
+ * or its average latency degrades to some multiple of the fastest candidate.
+ * Failed locations are suspended for an exponential back off period.
+ * 
+ * Once the reader has moved off the preferred location it goes back as soon
+ * as the preferred location is available and not degraded, so it returns
+ * when a suspension expires. If it moved because the preferred location was
+ * slow, every {@link #PROBE_INTERVAL}th request is sent there to refresh its
+ * latency, so a recovered location is noticed.
+ * 
+ * @author russell
+ * 
+ */
+public class LocationSelector {
+
+    /**
+     * Weight given to the latest sample in the latency moving average
+     */
+    private static final double SMOOTHING = 0.2;
+    /**
+     * How much slower than the fastest location the current one must be
+     * before we switch
+     */
+    private static final double DEGRADED_FACTOR = 3.0;
+    private static final long SUSPEND_MILLIS = 1000;
+    private static final long MAX_SUSPEND_MILLIS = 60000;
+    private static final int PREFERRED = 0;
+    /**
+     * How often, in requests, a degraded preferred location is probed
+     */
+    static final int PROBE_INTERVAL = 100;
+
+    private final RiakLocation[] candidates;
+    private final RawClient[] clients;
+    private final double[] latency;
+    private final int[] failures;
+    private final long[] suspendedUntil;
+    private int current = PREFERRED;
+    private int sinceProbe = 0;
+
+    /**
+     * @param candidates
+     *            the locations to choose from, in order of preference
+     */
+    public LocationSelector(RiakLocation[] candidates) {
+        if (candidates == null || candidates.length == 0) {
+            throw new IllegalArgumentException("candidates cannot be null or empty");
+        }
+        this.candidates = candidates.clone();
+        this.clients = new RawClient[candidates.length];
+        this.latency = new double[candidates.length];
+        this.failures = new int[candidates.length];
+        this.suspendedUntil = new long[candidates.length];
+    }
+
+    /**
+     * @return the number of candidate locations
+     */
+    public int size() {
+        return candidates.length;
+    }
+
+    /**
+     * Ping every candidate, to get a baseline latency for each and to suspend
+     * any that are down before the first real request is made.
+     */
+    public void probe() {
+        for (RiakLocation location : candidates) {
+            long start = System.nanoTime();
+            try {
+                getClient(location).ping();
+                success(location, System.nanoTime() - start);
+            } catch (IOException e) {
+                failure(location);
+            }
+        }
+    }
+
+    /**
+     * @return the location to use for the next request
+     */
+    public synchronized RiakLocation select() {
+        final long now = now();
+
+        if (current != PREFERRED && isAvailable(PREFERRED, now)) {
+            if (!isDegraded(PREFERRED, fastestAvailable(now))) {
+                current = PREFERRED;
+                sinceProbe = 0;
+            } else if (++sinceProbe >= PROBE_INTERVAL) {
+                sinceProbe = 0;
+                return candidates[PREFERRED];
+            }
+        }
+
+        if (isAvailable(current, now)) {
+            int fastest = fastestAvailable(now);
+            if (isDegraded(current, fastest)) {
+                current = fastest;
+            }
+        } else {
+            current = nextAvailable(now);
+        }
+
+        return candidates[current];
+    }
+
+    /**
+     * Pick a location to send a duplicate (hedged) request to
+     * 
+     * @param location
+     *            the location the original request went to
+     * @return the fastest available candidate other than
+     *         <code>location</code>, or null if there isn't one
+     */
+    public synchronized RiakLocation alternativeTo(RiakLocation location) {
+        final long now = now();
+        final int exclude = indexOf(location);
+        int alternative = -1;
+
+        for (int i = 0; i < candidates.length; i++) {
+            if (i != exclude && isAvailable(i, now)) {
+                if (alternative == -1
+                    || (latency[i] > 0 && (latency[alternative] == 0 || latency[i] < latency[alternative]))) {
+                    alternative = i;
+                }
+            }
+        }
+
+        return alternative == -1 ? null : candidates[alternative];
+    }
+
+    /**
+     * Record a successful request
+     * 
+     * @param location
+     *            where the request was sent
+     * @param nanos
+     *            how long it took
+     */
+    public synchronized void success(RiakLocation location, long nanos) {
+        int i = indexOf(location);
+
+        if (latency[i] == 0) {
+            latency[i] = nanos;
+        } else {
+            latency[i] = (SMOOTHING * nanos) + ((1 - SMOOTHING) * latency[i]);
+        }
+
+        failures[i] = 0;
+        suspendedUntil[i] = 0;
+    }
+
+    /**
+     * Record a failed request, suspends <code>location</code>
+     * 
+     * @param location
+     *            where the request was sent
+     */
+    public synchronized void failure(RiakLocation location) {
+        int i = indexOf(location);
+        failures[i]++;
+        long backOff = Math.min(MAX_SUSPEND_MILLIS, SUSPEND_MILLIS << Math.min(failures[i] - 1, 16));
+        suspendedUntil[i] = now() + backOff;
+    }
+
+    /**
+     * @param location
+     *            one of the candidate locations
+     * @return the {@link RawClient} for <code>location</code>, created on
+     *         first use
+     * @throws IOException
+     */
+    public synchronized RawClient getClient(RiakLocation location) throws IOException {
+        int i = indexOf(location);
+
+        if (clients[i] == null) {
+            clients[i] = newClient(location);
+        }
+
+        return clients[i];
+    }
+
+    /**
+     * Create a client for <code>location</code>
+     * 
+     * @param location
+     * @return a new {@link RawClient}
+     * @throws IOException
+     */
+    protected RawClient newClient(RiakLocation location) throws IOException {
+        return getRawClient(location);
+    }
+
+    /**
+     * @return the current time in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean isAvailable(int i, long now) {
+        return suspendedUntil[i] <= now;
+    }
+
+    private boolean isDegraded(int i, int fastest) {
+        return latency[fastest] > 0 && latency[i] > latency[fastest] * DEGRADED_FACTOR;
+    }
+
+    /**
+     * @return the available candidate with the lowest known latency, or the
+     *         current candidate if no other is known to be faster
+     */
+    private int fastestAvailable(long now) {
+        int fastest = current;
+
+        for (int i = 0; i < candidates.length; i++) {
+            if (isAvailable(i, now) && latency[i] > 0 && (latency[fastest] == 0 || latency[i] < latency[fastest])) {
+                fastest = i;
+            }
+        }
+
+        return fastest;
+    }
+
+    /**
+     * @return the first available candidate in order of preference, or, if
+     *         they're all suspended, the one that comes back soonest
+     */
+    private int nextAvailable(long now) {
+        int soonest = 0;
+
+        for (int i = 0; i < candidates.length; i++) {
+            if (isAvailable(i, now)) {
+                return i;
+            }
+            if (suspendedUntil[i] < suspendedUntil[soonest]) {
+                soonest = i;
+            }
+        }
+
+        return soonest;
+    }
+
+    private int indexOf(RiakLocation location) {
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i].equals(location)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a candidate location " + location.asString());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.basho.riak.client.query.MapReduce;
+import com.basho.riak.client.query.functions.Function;
+import com.basho.riak.client.query.functions.JSSourceFunction;
+import com.basho.riak.client.query.functions.NamedErlangFunction;
+import com.basho.riak.client.query.functions.NamedJSFunction;
+
+/**
+ * A Riak map/reduce phase that the record reader runs server side on a
+ * split's inputs. Phases are stored in the job {@link org.apache.hadoop.conf.Configuration}
+ * as JSON, so the function must be a {@link JSSourceFunction},
+ * {@link NamedJSFunction} or {@link NamedErlangFunction}, and the argument
+ * anything Jackson can serialize.
+ * 
+ * @author russell
+ * 
+ */
+public class MapReducePhase {
+
+    /**
+     * The kinds of phase
+     */
+    public enum Type {
+        MAP, REDUCE;
+    }
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String TYPE = "type";
+    private static final String LANGUAGE = "language";
+    private static final String JAVASCRIPT = "javascript";
+    private static final String ERLANG = "erlang";
+    private static final String SOURCE = "source";
+    private static final String NAME = "name";
+    private static final String MODULE = "module";
+    private static final String FUNCTION = "function";
+    private static final String ARG = "arg";
+
+    private final Type type;
+    private final Function function;
+    private final Object arg;
+
+    /**
+     * @param type
+     *            map or reduce
+     * @param function
+     *            the phase function
+     * @param arg
+     *            the static argument for the function, may be null
+     */
+    public MapReducePhase(Type type, Function function, Object arg) {
+        if (!(function instanceof JSSourceFunction || function instanceof NamedJSFunction
+              || function instanceof NamedErlangFunction)) {
+            throw new IllegalArgumentException("Unsupported function type " + function);
+        }
+        this.type = type;
+        this.function = function;
+        this.arg = arg;
+    }
+
+    /**
+     * @return the type of phase
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the phase function
+     */
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * @return the phase argument, may be null
+     */
+    public Object getArg() {
+        return arg;
+    }
+
+    /**
+     * Add this phase to <code>mapReduce</code>
+     * 
+     * @param mapReduce
+     *            the query to add to
+     */
+    public void addTo(MapReduce mapReduce) {
+        if (type == Type.MAP) {
+            if (arg == null) {
+                mapReduce.addMapPhase(function);
+            } else {
+                mapReduce.addMapPhase(function, arg);
+            }
+        } else {
+            if (arg == null) {
+                mapReduce.addReducePhase(function);
+            } else {
+                mapReduce.addReducePhase(function, arg);
+            }
+        }
+    }
+
+    /**
+     * @param phases
+     *            the phases
+     * @return <code>phases</code> as a JSON String
+     * @throws IOException
+     */
+    public static String toJSON(List<MapReducePhase> phases) throws IOException {
+        final List<Map<String, Object>> json = new ArrayList<Map<String, Object>>(phases.size());
+
+        for (MapReducePhase phase : phases) {
+            final Map<String, Object> p = new HashMap<String, Object>();
+            p.put(TYPE, phase.type.name());
+
+            if (phase.function instanceof JSSourceFunction) {
+                p.put(LANGUAGE, JAVASCRIPT);
+                p.put(SOURCE, ((JSSourceFunction) phase.function).getSource());
+            } else if (phase.function instanceof NamedJSFunction) {
+                p.put(LANGUAGE, JAVASCRIPT);
+                p.put(NAME, ((NamedJSFunction) phase.function).getFunction());
+            } else {
+                p.put(LANGUAGE, ERLANG);
+                p.put(MODULE, ((NamedErlangFunction) phase.function).getMod());
+                p.put(FUNCTION, ((NamedErlangFunction) phase.function).getFun());
+            }
+
+            if (phase.arg != null) {
+                p.put(ARG, phase.arg);
+            }
+
+            json.add(p);
+        }
+
+        return OBJECT_MAPPER.writeValueAsString(json);
+    }
+
+    /**
+     * @param json
+     *            a String from {@link #toJSON(List)}
+     * @return the phases
+     * @throws IOException
+     */
+    @SuppressWarnings("rawtypes") public static List<MapReducePhase> fromJSON(String json) throws IOException {
+        final List<MapReducePhase> phases = new ArrayList<MapReducePhase>();
+
+        for (Object o : OBJECT_MAPPER.readValue(json, List.class)) {
+            Map p = (Map) o;
+            Function function;
+
+            if (ERLANG.equals(p.get(LANGUAGE))) {
+                function = new NamedErlangFunction((String) p.get(MODULE), (String) p.get(FUNCTION));
+            } else if (p.get(SOURCE) != null) {
+                function = new JSSourceFunction((String) p.get(SOURCE));
+            } else {
+                function = new NamedJSFunction((String) p.get(NAME));
+            }
+
+            phases.add(new MapReducePhase(Type.valueOf((String) p.get(TYPE)), function, p.get(ARG)));
+        }
+
+        return phases;
+    }
+}
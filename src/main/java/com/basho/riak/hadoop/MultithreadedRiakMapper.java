@@ -0,0 +1,313 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Runs {@link RiakConfig#getMapperThreads(Configuration)} instances of the
+ * {@link Mapper} set with
+ * {@link RiakConfig#setThreadedMapperClass(Configuration, Class)} in one task,
+ * like hadoop's MultithreadedMapper. Converting, resolving and mapping happen
+ * concurrently on every thread, so a single task can use all the cores of a
+ * node.
+ * 
+ * The threads share the task's {@link RiakRecordReader}. Set
+ * {@link RiakConfig#setFetchConcurrency(Configuration, int)} to at least the
+ * number of threads so the reader keeps that many fetches in flight, otherwise
+ * the threads will queue on the reader. Output from all threads is written to
+ * the task's context one record at a time.
+ * 
+ * Use it with readers that return a new value for every record (e.g.
+ * {@link RiakInputFormat} or {@link RiakMetadataInputFormat}), values shared
+ * between records can't be handed to several threads.
+ * 
+ * @author russell
+ * @param <K>
+ *            the type of the output key
+ * @param <V>
+ *            the type of the output value
+ * 
+ */
+public class MultithreadedRiakMapper<K, V> extends Mapper<BucketKey, RiakResponse, K, V> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.Mapper#run(org.apache.hadoop.mapreduce.Mapper
+     * .Context)
+     */
+    @SuppressWarnings("unchecked") @Override public void run(Context context) throws IOException,
+            InterruptedException {
+        final Configuration conf = context.getConfiguration();
+        final Class<Mapper<BucketKey, RiakResponse, K, V>> mapperClass =
+                (Class<Mapper<BucketKey, RiakResponse, K, V>>) RiakConfig.getThreadedMapperClass(conf);
+
+        if (mapperClass == null) {
+            throw new IOException("No mapper class set, use RiakConfig.setThreadedMapperClass");
+        }
+        if (MultithreadedRiakMapper.class.isAssignableFrom(mapperClass)) {
+            throw new IOException("Can't nest a MultithreadedRiakMapper in a MultithreadedRiakMapper");
+        }
+
+        final int threads = RiakConfig.getMapperThreads(conf);
+        final List<MapRunner> runners = new ArrayList<MapRunner>(threads);
+
+        for (int i = 0; i < threads; i++) {
+            runners.add(new MapRunner(ReflectionUtils.newInstance(mapperClass, conf), context));
+        }
+        for (MapRunner runner : runners) {
+            runner.start();
+        }
+
+        Throwable failure = null;
+
+        try {
+            for (MapRunner runner : runners) {
+                runner.join();
+                if (failure == null) {
+                    failure = runner.failure;
+                }
+            }
+        } finally {
+            for (MapRunner runner : runners) {
+                runner.interrupt();
+            }
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * Runs one mapper instance against the shared reader and writer
+     */
+    private class MapRunner extends Thread {
+        private final Mapper<BucketKey, RiakResponse, K, V> mapper;
+        private final Mapper<BucketKey, RiakResponse, K, V>.Context subcontext;
+        private Throwable failure;
+
+        MapRunner(Mapper<BucketKey, RiakResponse, K, V> mapper, Context context) throws IOException,
+                InterruptedException {
+            super("riak-mapper");
+            setDaemon(true);
+            this.mapper = mapper;
+            this.subcontext = mapper.new Context(context.getConfiguration(), context.getTaskAttemptID(),
+                                                 new SharedRecordReader(context), new SharedRecordWriter(context),
+                                                 context.getOutputCommitter(), new SharedStatusReporter(context),
+                                                 context.getInputSplit());
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Thread#run()
+         */
+        @Override public void run() {
+            try {
+                mapper.run(subcontext);
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+
+    /**
+     * Hands each record of the task's reader to one thread
+     */
+    private class SharedRecordReader extends RecordReader<BucketKey, RiakResponse> {
+        private final Context outer;
+        private BucketKey key;
+        private RiakResponse value;
+
+        SharedRecordReader(Context outer) {
+            this.outer = outer;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * org.apache.hadoop.mapreduce.RecordReader#initialize(org.apache.hadoop
+         * .mapreduce.InputSplit,
+         * org.apache.hadoop.mapreduce.TaskAttemptContext)
+         */
+        @Override public void initialize(InputSplit split, TaskAttemptContext context) throws IOException,
+                InterruptedException {}
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.RecordReader#nextKeyValue()
+         */
+        @Override public boolean nextKeyValue() throws IOException, InterruptedException {
+            synchronized (outer) {
+                if (!outer.nextKeyValue()) {
+                    return false;
+                }
+                key = outer.getCurrentKey();
+                value = outer.getCurrentValue();
+                return true;
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentKey()
+         */
+        @Override public BucketKey getCurrentKey() {
+            return key;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentValue()
+         */
+        @Override public RiakResponse getCurrentValue() {
+            return value;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.RecordReader#getProgress()
+         */
+        @Override public float getProgress() throws IOException, InterruptedException {
+            return 0;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.RecordReader#close()
+         */
+        @Override public void close() throws IOException {}
+    }
+
+    /**
+     * Writes every thread's output to the task's context
+     */
+    private class SharedRecordWriter extends RecordWriter<K, V> {
+        private final Context outer;
+
+        SharedRecordWriter(Context outer) {
+            this.outer = outer;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.RecordWriter#write(java.lang.Object,
+         * java.lang.Object)
+         */
+        @Override public void write(K key, V value) throws IOException, InterruptedException {
+            synchronized (outer) {
+                outer.write(key, value);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * org.apache.hadoop.mapreduce.RecordWriter#close(org.apache.hadoop.mapreduce
+         * .TaskAttemptContext)
+         */
+        @Override public void close(TaskAttemptContext context) throws IOException, InterruptedException {}
+    }
+
+    /**
+     * Reports every thread's status and counters to the task's context
+     */
+    private class SharedStatusReporter extends StatusReporter {
+        private final Context outer;
+
+        SharedStatusReporter(Context outer) {
+            this.outer = outer;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * org.apache.hadoop.mapreduce.StatusReporter#getCounter(java.lang.Enum)
+         */
+        @Override public Counter getCounter(Enum<?> name) {
+            return outer.getCounter(name);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * org.apache.hadoop.mapreduce.StatusReporter#getCounter(java.lang.String,
+         * java.lang.String)
+         */
+        @Override public Counter getCounter(String group, String name) {
+            return outer.getCounter(group, name);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.StatusReporter#progress()
+         */
+        @Override public void progress() {
+            outer.progress();
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.apache.hadoop.mapreduce.StatusReporter#setStatus(java.lang.String)
+         */
+        @Override public void setStatus(String status) {
+            try {
+                outer.setStatus(status);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * @return 0, the task's reader reports progress
+         */
+        public float getProgress() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.cap.ConflictResolver;
+import com.basho.riak.client.convert.Converter;
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * A {@link RiakMapper} that gets its records in batches of up to
+ * {@link RiakConfig#getMapperBatchSize(Configuration)}, so it can make one
+ * bulk call per batch rather than one per record. Values are converted and
+ * resolved exactly as for a {@link RiakMapper}.
+ * 
+ * Set {@link RiakConfig#setFetchConcurrency(Configuration, int)} so the
+ * record reader fetches ahead while a batch is being filled and mapped.
+ * 
+ * @author russell
+ * @param <T>
+ *            the type for the input value
+ * @param <OK>
+ *            the type for the out key
+ * @param <OV>
+ *            the type for the out value
+ * 
+ */
+public abstract class RiakBatchMapper<T, OK, OV> extends RiakMapper<T, OK, OV> {
+
+    private final List<BucketKey> keys = new ArrayList<BucketKey>();
+    private final List<T> values = new ArrayList<T>();
+    private int batchSize = 1;
+
+    /**
+     * @param converter
+     *            a {@link Converter}
+     * @param resolver
+     *            a {@link ConflictResolver}
+     */
+    public RiakBatchMapper(Converter<T> converter, ConflictResolver<T> resolver) {
+        super(converter, resolver);
+    }
+
+    /**
+     * @param converter
+     *            a {@link Converter}
+     * @param resolver
+     *            a {@link ConflictResolver}, used if <code>rawResolver</code>
+     *            is null
+     * @param rawResolver
+     *            a {@link ConflictResolver} for the unconverted siblings, may
+     *            be null
+     */
+    public RiakBatchMapper(Converter<T> converter, ConflictResolver<T> resolver,
+            ConflictResolver<IRiakObject> rawResolver) {
+        super(converter, resolver, rawResolver);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.Mapper#run(org.apache.hadoop.mapreduce.Mapper
+     * .Context)
+     */
+    @Override public void run(Context context) throws IOException, InterruptedException {
+        batchSize = RiakConfig.getMapperBatchSize(context.getConfiguration());
+        setup(context);
+        while (context.nextKeyValue()) {
+            map(context.getCurrentKey(), context.getCurrentValue(), context);
+        }
+        flush(context);
+        cleanup(context);
+    }
+
+    /**
+     * Adds the converted value to the current batch, and maps the batch if it
+     * is full
+     */
+    @Override public final void map(BucketKey k, T value, Context context) throws IOException, InterruptedException {
+        keys.add(k);
+        values.add(value);
+
+        if (keys.size() >= batchSize) {
+            flush(context);
+        }
+    }
+
+    private void flush(Context context) throws IOException, InterruptedException {
+        if (!keys.isEmpty()) {
+            mapBatch(keys, values, context);
+            keys.clear();
+            values.clear();
+        }
+    }
+
+    /**
+     * Override this method in your {@link Mapper}, it is called with each
+     * batch of records. The lists are reused for the next batch, copy them if
+     * you need to keep them.
+     * 
+     * @param keys
+     *            the {@link BucketKey}s in the batch
+     * @param values
+     *            the converted value for each key, in the same order
+     * @param context
+     *            the hadoop job Context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public abstract void mapBatch(List<BucketKey> keys, List<T> values, Context context) throws IOException,
+            InterruptedException;
+}
@@ -0,0 +1,294 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.basho.riak.client.raw.FetchMeta;
+import com.basho.riak.client.raw.RawClient;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+
+/**
+ * Fetches values for a {@link RiakRecordReader} from the candidate locations
+ * of a split. Failed fetches are retried (on another location if the
+ * {@link LocationSelector} has suspended the failing one), each attempt can
+ * have a timeout, and, if hedging is on, a fetch that is slower than the
+ * configured percentile of recent fetches is duplicated to a second location
+ * and the first answer wins. Every request goes through the task's
+ * {@link AdaptiveThrottle}. HEAD and GET latencies are tracked separately, so
+ * cheap HEADs don't make slow GETs look like they need hedging.
+ * 
+ * Timed and hedged fetches run on a pool of twice as many threads as the
+ * most concurrent caller (the record reader, link walk or lookup) uses. A
+ * request that loses a hedge or times out is cancelled, and its outcome isn't
+ * counted against its location or the throttle.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakFetcher {
+
+    private final LocationSelector selector;
+    private final LatencyTracker fetchLatencies = new LatencyTracker();
+    private final LatencyTracker headLatencies = new LatencyTracker();
+    private final AdaptiveThrottle throttle;
+    private final FetchMeta fetchMeta;
+    private final FetchMeta headMeta;
+    private final int attempts;
+    private final long timeoutNanos;
+    private final float hedgePercentile;
+    private final int poolSize;
+    private ExecutorService executor;
+
+    /**
+     * @param selector
+     *            the {@link LocationSelector} for the split's locations
+     * @param conf
+     *            the job {@link Configuration}, for timeout, retry, hedging,
+     *            concurrency and fetch quorum settings
+     * @param throttle
+     *            the task's {@link AdaptiveThrottle}
+     */
+    public RiakFetcher(LocationSelector selector, Configuration conf, AdaptiveThrottle throttle) {
+        this.selector = selector;
+        this.attempts = Math.max(1, RiakConfig.getFetchAttempts(conf, selector.size()));
+        this.timeoutNanos = MILLISECONDS.toNanos(RiakConfig.getFetchTimeout(conf));
+        this.hedgePercentile = RiakConfig.getHedgePercentile(conf);
+        this.throttle = throttle;
+        this.fetchMeta = RiakConfig.getInputFetchMeta(conf);
+        this.headMeta = fetchMeta == null ? new FetchMeta.Builder().build() : fetchMeta;
+        this.poolSize = 2 * Math.max(RiakConfig.getFetchConcurrency(conf),
+                                     Math.max(RiakConfig.getLinkWalkConcurrency(conf),
+                                              RiakConfig.getLookupConcurrency(conf)));
+    }
+
+    /**
+     * Fetch <code>key</code>, retrying up to the configured number of attempts
+     * 
+     * @param key
+     *            the {@link BucketKey} to fetch
+     * @return the {@link RiakResponse}
+     * @throws IOException
+     *             the last failure, if every attempt fails
+     * @throws InterruptedException
+     */
+    public RiakResponse fetch(BucketKey key) throws IOException, InterruptedException {
+        return execute(key, false);
+    }
+
+    /**
+     * Fetch just the metadata for <code>key</code> (no values), retrying up to
+     * the configured number of attempts
+     * 
+     * @param key
+     *            the {@link BucketKey} to fetch
+     * @return the {@link RiakResponse}, its objects have no values
+     * @throws IOException
+     *             the last failure, if every attempt fails
+     * @throws InterruptedException
+     */
+    public RiakResponse head(BucketKey key) throws IOException, InterruptedException {
+        return execute(key, true);
+    }
+
+    /**
+     * Stop any background fetches
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private RiakResponse execute(BucketKey key, boolean headOnly) throws IOException, InterruptedException {
+        IOException lastFailure = null;
+
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            try {
+                if (timeoutNanos == 0 && hedgePercentile == 0) {
+                    return fetch(selector.select(), key, headOnly);
+                } else {
+                    return asyncFetch(key, headOnly);
+                }
+            } catch (IOException e) {
+                lastFailure = e;
+            }
+        }
+
+        throw lastFailure;
+    }
+
+    /**
+     * Run the fetch on a background thread so it can be timed out, and hedged
+     * if it is slow.
+     */
+    private RiakResponse asyncFetch(BucketKey key, boolean headOnly) throws IOException, InterruptedException {
+        final CompletionService<RiakResponse> completion = new ExecutorCompletionService<RiakResponse>(getExecutor());
+        final List<Future<RiakResponse>> futures = new ArrayList<Future<RiakResponse>>(2);
+        final List<RiakLocation> sentTo = new ArrayList<RiakLocation>(2);
+        final long start = System.nanoTime();
+        final long deadline = timeoutNanos > 0 ? start + timeoutNanos : Long.MAX_VALUE;
+        long hedgeAt = getHedgeAt(start, headOnly);
+        IOException failure = null;
+
+        final RiakLocation primary = selector.select();
+        futures.add(submit(completion, primary, key, headOnly));
+        sentTo.add(primary);
+        int pending = 1;
+
+        try {
+            while (pending > 0) {
+                long waitUntil = Math.min(deadline, hedgeAt);
+                Future<RiakResponse> done;
+
+                if (waitUntil == Long.MAX_VALUE) {
+                    done = completion.take();
+                } else {
+                    done = completion.poll(Math.max(0, waitUntil - System.nanoTime()), NANOSECONDS);
+                }
+
+                if (done != null) {
+                    pending--;
+                    try {
+                        return done.get();
+                    } catch (ExecutionException e) {
+                        failure = toIOException(e.getCause());
+                    }
+                } else if (System.nanoTime() >= deadline) {
+                    for (RiakLocation location : sentTo) {
+                        selector.failure(location);
+                    }
+                    throw new IOException("Timed out fetching " + key);
+                } else if (hedgeAt != Long.MAX_VALUE) {
+                    hedgeAt = Long.MAX_VALUE;
+                    RiakLocation alternative = selector.alternativeTo(primary);
+                    if (alternative != null) {
+                        futures.add(submit(completion, alternative, key, headOnly));
+                        sentTo.add(alternative);
+                        pending++;
+                    }
+                }
+            }
+        } finally {
+            for (Future<RiakResponse> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        throw failure;
+    }
+
+    /**
+     * @return when to send a hedged request for a fetch that started at
+     *         <code>start</code>, or Long.MAX_VALUE for never
+     */
+    private long getHedgeAt(long start, boolean headOnly) {
+        if (hedgePercentile > 0) {
+            long delay = (headOnly ? headLatencies : fetchLatencies).percentile(hedgePercentile);
+            if (delay >= 0) {
+                return start + delay;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private Future<RiakResponse> submit(CompletionService<RiakResponse> completion, final RiakLocation location,
+                                        final BucketKey key, final boolean headOnly) {
+        return completion.submit(new Callable<RiakResponse>() {
+            public RiakResponse call() throws Exception {
+                return fetch(location, key, headOnly);
+            }
+        });
+    }
+
+    /**
+     * Fetch <code>key</code> from <code>location</code>, and record the outcome
+     * unless the fetch was cancelled
+     */
+    private RiakResponse fetch(RiakLocation location, BucketKey key, boolean headOnly) throws IOException,
+            InterruptedException {
+        throttle.acquire();
+        final long start = System.nanoTime();
+        try {
+            RawClient client = selector.getClient(location);
+            RiakResponse response;
+            if (headOnly) {
+                response = client.head(key.getBucket(), key.getKey(), headMeta);
+            } else if (fetchMeta == null) {
+                response = client.fetch(key.getBucket(), key.getKey());
+            } else {
+                response = client.fetch(key.getBucket(), key.getKey(), fetchMeta);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (!Thread.currentThread().isInterrupted()) {
+                selector.success(location, elapsed);
+                (headOnly ? headLatencies : fetchLatencies).add(elapsed);
+                throttle.success(elapsed);
+            }
+            return response;
+        } catch (IOException e) {
+            if (!Thread.currentThread().isInterrupted() && !(e instanceof InterruptedIOException)) {
+                recordFailure(location);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // a client bug or bad response shouldn't escape the retries
+            recordFailure(location);
+            throw new IOException(e);
+        }
+    }
+
+    private void recordFailure(RiakLocation location) {
+        selector.failure(location);
+        throttle.failure();
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "riak-fetcher");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static IOException toIOException(Throwable t) {
+        if (t instanceof IOException) {
+            return (IOException) t;
+        }
+        return new IOException(t);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static com.basho.riak.hadoop.config.ClientFactory.getClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.client.RiakException;
+import com.basho.riak.hadoop.config.NoRiakLocationsException;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.keylisters.IndexEntry;
+import com.basho.riak.hadoop.keylisters.KeyLister;
+import com.basho.riak.hadoop.keylisters.SecondaryIndexesKeyLister;
+
+/**
+ * Index term only {@link InputFormat}. The job's {@link KeyLister} must be a
+ * {@link SecondaryIndexesKeyLister}, the mapper gets each matching key and the
+ * index term it matched on (integer terms in decimal). No objects are fetched
+ * by the tasks, so a value query runs at listing speed. <strong>A range query
+ * is much more expensive:</strong> Riak reads every matching object to find
+ * its terms, see
+ * {@link SecondaryIndexesKeyLister#getEntries(com.basho.riak.client.IRiakClient)}.
+ * Incremental jobs and {@link CompletionLedger}s are not supported.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakIndexInputFormat extends InputFormat<BucketKey, Text> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#createRecordReader(org.apache
+     * .hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public RecordReader<BucketKey, Text> createRecordReader(InputSplit split, TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        return new RiakIndexRecordReader();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#getSplits(org.apache.hadoop.mapreduce
+     * .JobContext)
+     */
+    @Override public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
+        Configuration conf = context.getConfiguration();
+        RiakLocation[] locations = RiakConfig.getRiakLocatons(conf);
+
+        if (locations.length == 0) {
+            throw new NoRiakLocationsException();
+        }
+
+        if (RiakConfig.getIncrementalName(conf) != null) {
+            // the index query can't be combined with the last modified index, and checking every key with a HEAD
+            // would defeat the point of the format
+            throw new IOException("RiakIndexInputFormat does not support incremental jobs");
+        }
+        if (CompletionLedger.isEnabled(conf)) {
+            // the ledger drops completed keys, but a key can have entries in more than one split
+            throw new IOException("RiakIndexInputFormat does not support completion ledgers");
+        }
+
+        final KeyLister keyLister = RiakConfig.getKeyLister(conf);
+
+        if (!(keyLister instanceof SecondaryIndexesKeyLister)) {
+            throw new IOException("RiakIndexInputFormat needs a SecondaryIndexesKeyLister, not "
+                                  + keyLister.getClass().getName());
+        }
+
+        List<IndexEntry> entries = getEntries(locations, (SecondaryIndexesKeyLister) keyLister);
+        BucketKeyFilter filter = BucketKeyFilter.get(conf);
+        if (filter != null) {
+            List<IndexEntry> passed = new ArrayList<IndexEntry>();
+            for (IndexEntry entry : entries) {
+                if (filter.mightContain(entry.getKey())) {
+                    passed.add(entry);
+                }
+            }
+            entries = passed;
+        }
+        if (KeySampler.isSampling(conf)) {
+            Set<BucketKey> keys = new LinkedHashSet<BucketKey>();
+            for (IndexEntry entry : entries) {
+                keys.add(entry.getKey());
+            }
+            Set<BucketKey> sampled = new HashSet<BucketKey>(KeySampler.sample(conf, new ArrayList<BucketKey>(keys)));
+            List<IndexEntry> passed = new ArrayList<IndexEntry>();
+            for (IndexEntry entry : entries) {
+                if (sampled.contains(entry.getKey())) {
+                    passed.add(entry);
+                }
+            }
+            entries = passed;
+        }
+        return getSplits(entries, locations,
+                         RiakInputFormat.getSplitSize(entries.size(), RiakConfig.getHadoopClusterSize(conf, 3)));
+    }
+
+    /**
+     * Get the index entries for the job. If the first location fails, try the
+     * next, and so on, until we have a success or every location has failed.
+     * 
+     * @return the list of entries (may be empty, never null)
+     * @throws IOException
+     */
+    public static List<IndexEntry> getEntries(RiakLocation[] locations, SecondaryIndexesKeyLister keyLister)
+            throws IOException {
+        RiakException lastFailure = null;
+
+        for (RiakLocation location : locations) {
+            try {
+                return keyLister.getEntries(getClient(location));
+            } catch (RiakException e) {
+                lastFailure = e;
+            }
+        }
+
+        throw new IOException(lastFailure);
+    }
+
+    /**
+     * Generate the splits, just like
+     * {@link RiakInputFormat#getSplits(List, RiakLocation[], int)}
+     * 
+     * @param entries
+     *            the list of inputs
+     * @param locations
+     *            all the riak locations
+     * @param splitSize
+     *            The target size for each split
+     * @return the input splits
+     */
+    public static List<InputSplit> getSplits(final List<IndexEntry> entries, final RiakLocation[] locations,
+                                             int splitSize) {
+        final List<InputSplit> splits = new ArrayList<InputSplit>();
+        int splitCnt = 0;
+        int startIndex = 0;
+        int numberOfEntries = entries.size();
+        while (startIndex < numberOfEntries) {
+            int endIndex = Math.min(numberOfEntries, splitSize + startIndex);
+            final List<IndexEntry> split = entries.subList(startIndex, endIndex);
+            splits.add(new RiakIndexInputSplit(split, RiakInputFormat.getCandidates(locations, splitCnt
+                                                                                             % locations.length)));
+            splitCnt++;
+            startIndex = endIndex;
+        }
+
+        return splits;
+    }
+}
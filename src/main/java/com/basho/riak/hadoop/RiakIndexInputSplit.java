@@ -0,0 +1,127 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.keylisters.IndexEntry;
+
+/**
+ * A {@link RiakInputSplit} that also carries the 2i term for each of its keys,
+ * for {@link RiakIndexInputFormat}.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakIndexInputSplit extends RiakInputSplit {
+
+    private String[] terms;
+
+    public RiakIndexInputSplit() {};
+
+    /**
+     * @param entries
+     *            the keys and terms for this split
+     * @param locations
+     *            the candidate locations for the split, in order of
+     *            preference. Must contain at least one location
+     */
+    public RiakIndexInputSplit(List<IndexEntry> entries, RiakLocation[] locations) {
+        super(keys(entries), locations);
+        this.terms = new String[entries.size()];
+
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = entries.get(i).getTerm();
+        }
+    }
+
+    private static List<BucketKey> keys(List<IndexEntry> entries) {
+        final List<BucketKey> keys = new ArrayList<BucketKey>(entries.size());
+
+        for (IndexEntry entry : entries) {
+            keys.add(entry.getKey());
+        }
+
+        return keys;
+    }
+
+    /**
+     * @return the index terms, in the same order as {@link #getInputs()}
+     */
+    public synchronized List<String> getTerms() {
+        return Arrays.asList(terms.clone());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.basho.riak.hadoop.RiakInputSplit#readFields(java.io.DataInput)
+     */
+    @Override public void readFields(DataInput din) throws IOException {
+        super.readFields(din);
+        terms = new String[din.readInt()];
+
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = din.readUTF();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.basho.riak.hadoop.RiakInputSplit#write(java.io.DataOutput)
+     */
+    @Override public void write(DataOutput dout) throws IOException {
+        super.write(dout);
+        dout.writeInt(terms.length);
+
+        for (String term : terms) {
+            dout.writeUTF(term);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.basho.riak.hadoop.RiakInputSplit#hashCode()
+     */
+    @Override public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + Arrays.hashCode(terms);
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.basho.riak.hadoop.RiakInputSplit#equals(java.lang.Object)
+     */
+    @Override public boolean equals(Object obj) {
+        if (!super.equals(obj)) {
+            return false;
+        }
+        if (!(obj instanceof RiakIndexInputSplit)) {
+            return false;
+        }
+        RiakIndexInputSplit other = (RiakIndexInputSplit) obj;
+        return Arrays.equals(terms, other.terms);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Emits each key of a {@link RiakIndexInputSplit} with the 2i term it matched
+ * on. Nothing is fetched from Riak.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakIndexRecordReader extends AbstractRiakRecordReader<Text> {
+
+    private final Text term = new Text();
+    private List<String> terms;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#initialize(org.apache.
+     * hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public void initialize(InputSplit split, TaskAttemptContext taskAttemptContext) throws IOException,
+            InterruptedException {
+        super.initialize(split, taskAttemptContext);
+        terms = ((RiakIndexInputSplit) split).getTerms();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#read(com.basho.riak.hadoop
+     * .BucketKey)
+     */
+    @Override protected Text read(BucketKey key) throws IOException, InterruptedException {
+        // by position, as keys skipped by a checkpoint or watermark are never read
+        term.set(terms.get((int) getPosition()));
+        return term;
+    }
+}
@@ -28,11 +28,14 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import com.basho.riak.client.IRiakClient;
 import com.basho.riak.client.RiakException;
+import com.basho.riak.client.query.indexes.IntIndex;
 import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.client.raw.query.indexes.IntRangeQuery;
 import com.basho.riak.hadoop.config.NoRiakLocationsException;
 import com.basho.riak.hadoop.config.RiakConfig;
 import com.basho.riak.hadoop.config.RiakLocation;
 import com.basho.riak.hadoop.keylisters.KeyLister;
+import com.basho.riak.hadoop.keylisters.SecondaryIndexesKeyLister;
 
 /**
  * Riak specific {@link InputFormat} for Hadoop Map/Reduce
@@ -46,6 +49,10 @@ public class RiakInputFormat extends InputFormat<BucketKey, RiakResponse> {
      * TODO: add this to the configuration.
      */
     private static final int MINIMUM_SPLIT = 10;
+    /**
+     * How many times an input limit's worth of keys to plan splits for
+     */
+    static final int LIMIT_HEADROOM = 2;
 
     /* (non-Javadoc)
      * @see org.apache.hadoop.mapreduce.InputFormat#createRecordReader(org.apache.hadoop.mapreduce.InputSplit, org.apache.hadoop.mapreduce.TaskAttemptContext)
@@ -67,18 +74,80 @@ public class RiakInputFormat extends InputFormat<BucketKey, RiakResponse> {
             throw new NoRiakLocationsException();
         }
 
-        final KeyLister keyLister = RiakConfig.getKeyLister(conf);
+        KeyLister keyLister = RiakConfig.getKeyLister(conf);
+
+        if (RiakConfig.getIncrementalName(conf) != null) {
+            keyLister = beginIncremental(context, keyLister);
+        }
 
         try {
             List<BucketKey> keys = getKeys(locations, keyLister, 0);
-            List<InputSplit> splits = getSplits(keys, locations,
-                                                getSplitSize(keys.size(), RiakConfig.getHadoopClusterSize(conf, 3)));
-            return splits;
+            BucketKeyFilter filter = BucketKeyFilter.get(conf);
+            if (filter != null) {
+                keys = filter.filter(keys);
+            }
+            if (KeySampler.isSampling(conf)) {
+                keys = KeySampler.sample(conf, keys);
+            }
+            if (CompletionLedger.isEnabled(conf)) {
+                keys = CompletionLedger.begin(context, keys);
+            }
+            return planSplits(keys, locations, conf);
         } catch (RiakException e) {
             throw new IOException(e);
         }
     }
 
+    /**
+     * Size and generate the splits for <code>keys</code>. If the job has an
+     * input limit only the first {@link #LIMIT_HEADROOM} times the limit keys
+     * are kept, so a small limit over a big bucket doesn't start a task per
+     * few keys just for most of them to find the limit reached. The headroom
+     * allows for keys the readers skip (not found, or unmodified in an
+     * incremental job).
+     * 
+     * @param keys
+     *            the job's input
+     * @param locations
+     *            all the riak locations
+     * @param conf
+     *            the job {@link Configuration}
+     * @return the input splits
+     */
+    static List<InputSplit> planSplits(List<BucketKey> keys, RiakLocation[] locations, Configuration conf) {
+        final long limit = RiakConfig.getInputLimit(conf);
+
+        if (limit > 0 && keys.size() > limit * LIMIT_HEADROOM) {
+            keys = keys.subList(0, (int) (limit * LIMIT_HEADROOM));
+        }
+
+        return getSplits(keys, locations, getSplitSize(keys.size(), RiakConfig.getHadoopClusterSize(conf, 3)));
+    }
+
+    /**
+     * Record the watermark this run will commit, and, if the job has a last
+     * modified index, list the keys modified since the last watermark from it
+     * 
+     * @return the {@link KeyLister} for this run
+     */
+    private static KeyLister beginIncremental(JobContext context, KeyLister keyLister) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final long from = Watermark.get(conf);
+        final long to = System.currentTimeMillis();
+        final String index = RiakConfig.getLastModifiedIndex(conf);
+
+        Watermark.begin(context, to);
+
+        if (index == null) {
+            // the record readers check each key
+            return keyLister;
+        }
+
+        return new SecondaryIndexesKeyLister(new IntRangeQuery(IntIndex.named(index),
+                                                               RiakConfig.getLastModifiedBucket(conf),
+                                                               (int) (from / 1000), (int) (to / 1000)));
+    }
+
     /**
      * Get the list of input keys for the task. If the first location fails, try
      * the next, and so on, until we have a success or definitive failure.
@@ -129,9 +198,11 @@ public class RiakInputFormat extends InputFormat<BucketKey, RiakResponse> {
 
     /**
      * Generate the splits, each split (except maybe the last) will be
-     * <code>splitSize</code> and will have a {@link RiakLocation} assigned to
-     * it. The {@link RiakLocation} is chosen by modulus so it should be a
-     * reasonably fair distribution.
+     * <code>splitSize</code> and will have all the {@link RiakLocation}s
+     * assigned to it as candidates. The preferred {@link RiakLocation} is
+     * chosen by modulus so it should be a reasonably fair distribution, the
+     * rest follow in order and are used by the {@link RiakRecordReader} if the
+     * preferred location is slow or unavailable.
      * 
      * @param keys
      *            the list of inputs
@@ -149,11 +220,33 @@ public class RiakInputFormat extends InputFormat<BucketKey, RiakResponse> {
         while (startIndex < numberOfKeys) {
             int endIndex = Math.min(numberOfKeys, splitSize + startIndex);
             final List<BucketKey> split = keys.subList(startIndex, endIndex);
-            splits.add(new RiakInputSplit(split, locations[splitCnt % locations.length]));
+            splits.add(new RiakInputSplit(split, getCandidates(locations, splitCnt % locations.length)));
             splitCnt++;
             startIndex = endIndex;
         }
 
         return splits;
     }
+
+    /**
+     * Order <code>locations</code> by preference for a split, starting with
+     * <code>preferred</code> and wrapping around. Riak doesn't expose the
+     * preference list for a key to clients, so every location is a candidate
+     * for every split.
+     * 
+     * @param locations
+     *            all the riak locations
+     * @param preferred
+     *            the index of the preferred location
+     * @return a new array of the locations, in order of preference
+     */
+    public static RiakLocation[] getCandidates(final RiakLocation[] locations, int preferred) {
+        final RiakLocation[] candidates = new RiakLocation[locations.length];
+
+        for (int i = 0; i < locations.length; i++) {
+            candidates[i] = locations[(preferred + i) % locations.length];
+        }
+
+        return candidates;
+    }
 }
\ No newline at end of file
@@ -34,21 +34,44 @@ import com.basho.riak.hadoop.config.RiakLocation;
 public class RiakInputSplit extends InputSplit implements Writable {
 
     private BucketKey[] inputs;
-    private RiakLocation location;
+    private RiakLocation[] locations;
 
     public RiakInputSplit() {};
 
     public RiakInputSplit(List<BucketKey> split, RiakLocation location) {
+        this(split, new RiakLocation[] { location });
+    }
+
+    /**
+     * @param split
+     *            the keys for this split
+     * @param locations
+     *            the candidate locations for the split, in order of
+     *            preference. Must contain at least one location
+     */
+    public RiakInputSplit(List<BucketKey> split, RiakLocation[] locations) {
+        if (locations == null || locations.length == 0) {
+            throw new IllegalArgumentException("a split needs at least one location");
+        }
         this.inputs = split.toArray(new BucketKey[split.size()]);
-        this.location = location;
+        this.locations = locations.clone();
     }
 
     /**
-     * @return the location for the split (this is where the record reader for
-     *         this split will load data from)
+     * @return the preferred location for the split (this is where the record
+     *         reader for this split will load data from, unless it is slow or
+     *         unavailable)
      */
     public synchronized RiakLocation getLocation() {
-        return location;
+        return locations[0];
+    }
+
+    /**
+     * @return all the candidate locations for this split, in order of
+     *         preference
+     */
+    public synchronized RiakLocation[] getRiakLocations() {
+        return locations.clone();
     }
 
     /**
@@ -71,10 +94,13 @@ public class RiakInputSplit extends InputSplit implements Writable {
     /*
      * (non-Javadoc)
      * 
+     * Only the preferred location is a locality hint, the rest are fail over
+     * candidates for the reader, see getRiakLocations()
+     * 
      * @see org.apache.hadoop.mapreduce.InputSplit#getLocations()
      */
     @Override public String[] getLocations() throws IOException, InterruptedException {
-        return new String[] { location.asString() };
+        return new String[] { locations[0].asString() };
     }
 
     /*
@@ -83,7 +109,12 @@ public class RiakInputSplit extends InputSplit implements Writable {
      * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
      */
     public void readFields(DataInput din) throws IOException {
-        location = RiakLocation.fromString(din.readUTF());
+        locations = new RiakLocation[din.readInt()];
+
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = RiakLocation.fromString(din.readUTF());
+        }
+
         inputs = new BucketKey[din.readInt()];
 
         for (int i = 0; i < inputs.length; i++) {
@@ -97,7 +128,12 @@ public class RiakInputSplit extends InputSplit implements Writable {
      * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
      */
     public void write(DataOutput dout) throws IOException {
-        dout.writeUTF(location.asString());
+        dout.writeInt(locations.length);
+
+        for (RiakLocation location : locations) {
+            dout.writeUTF(location.asString());
+        }
+
         dout.writeInt(inputs.length);
 
         for (BucketKey bk : inputs) {
@@ -115,7 +151,7 @@ public class RiakInputSplit extends InputSplit implements Writable {
         final int prime = 31;
         int result = 1;
         result = prime * result + Arrays.hashCode(inputs);
-        result = prime * result + ((location == null) ? 0 : location.hashCode());
+        result = prime * result + Arrays.hashCode(locations);
         return result;
     }
 
@@ -138,11 +174,7 @@ public class RiakInputSplit extends InputSplit implements Writable {
         if (!Arrays.equals(inputs, other.inputs)) {
             return false;
         }
-        if (location == null) {
-            if (other.location != null) {
-                return false;
-            }
-        } else if (!location.equals(other.location)) {
+        if (!Arrays.equals(locations, other.locations)) {
             return false;
         }
         return true;
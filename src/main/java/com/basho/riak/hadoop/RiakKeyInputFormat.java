@@ -0,0 +1,73 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.keylisters.KeyLister;
+
+/**
+ * Key only version of {@link RiakInputFormat}. The mapper gets the keys from
+ * the job's {@link KeyLister} and no values, so the job runs at key listing
+ * speed. Use it for counting, deleting or re-keying. Incremental jobs must
+ * have a last modified index, see
+ * {@link RiakConfig#setLastModifiedIndex(Configuration, String, String)}.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakKeyInputFormat extends InputFormat<BucketKey, NullWritable> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#createRecordReader(org.apache
+     * .hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public RecordReader<BucketKey, NullWritable> createRecordReader(InputSplit split,
+                                                                              TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        return new RiakKeyRecordReader();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#getSplits(org.apache.hadoop.mapreduce
+     * .JobContext)
+     */
+    @Override public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
+        final Configuration conf = context.getConfiguration();
+
+        if (RiakConfig.getIncrementalName(conf) != null && RiakConfig.getLastModifiedIndex(conf) == null) {
+            // without the index every key would need a HEAD request
+            throw new IOException("Incremental jobs with RiakKeyInputFormat need a last modified index");
+        }
+
+        return new RiakInputFormat().getSplits(context);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.NullWritable;
+
+/**
+ * Emits each key of a {@link RiakInputSplit} with no value. Nothing is fetched
+ * from Riak.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakKeyRecordReader extends AbstractRiakRecordReader<NullWritable> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#read(com.basho.riak.hadoop
+     * .BucketKey)
+     */
+    @Override protected NullWritable read(BucketKey key) throws IOException, InterruptedException {
+        return NullWritable.get();
+    }
+}
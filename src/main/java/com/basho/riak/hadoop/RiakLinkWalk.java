@@ -0,0 +1,91 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.basho.riak.client.raw.RiakResponse;
+
+/**
+ * A root object and the objects reached from it by each step of a link walk.
+ * Only steps marked keep have their objects, the others are empty.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakLinkWalk {
+
+    private final RiakResponse root;
+    private final List<Map<BucketKey, RiakResponse>> steps;
+
+    /**
+     * @param root
+     *            the object the walk starts from
+     * @param numberOfSteps
+     *            the number of steps in the walk
+     */
+    public RiakLinkWalk(RiakResponse root, int numberOfSteps) {
+        this.root = root;
+        this.steps = new ArrayList<Map<BucketKey, RiakResponse>>(numberOfSteps);
+
+        for (int i = 0; i < numberOfSteps; i++) {
+            steps.add(new LinkedHashMap<BucketKey, RiakResponse>());
+        }
+    }
+
+    void addLinked(int step, Map<BucketKey, RiakResponse> linked) {
+        steps.get(step).putAll(linked);
+    }
+
+    /**
+     * @return the object the walk starts from
+     */
+    public RiakResponse getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the number of steps in the walk
+     */
+    public int numberOfSteps() {
+        return steps.size();
+    }
+
+    /**
+     * @param step
+     *            the index of a step
+     * @return the objects reached by <code>step</code>, by key, in link order,
+     *         empty if the step isn't kept
+     */
+    public Map<BucketKey, RiakResponse> getLinked(int step) {
+        return Collections.unmodifiableMap(steps.get(step));
+    }
+
+    /**
+     * @return every kept object, in step order
+     */
+    public List<RiakResponse> getAllLinked() {
+        final List<RiakResponse> all = new ArrayList<RiakResponse>();
+
+        for (Map<BucketKey, RiakResponse> step : steps) {
+            all.addAll(step.values());
+        }
+
+        return all;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Link walking version of {@link RiakInputFormat}. The mapper gets each object
+ * in the split together with the objects reached from it by the link steps
+ * added with
+ * {@link RiakConfig#addLinkWalkStep(org.apache.hadoop.conf.Configuration, String, String, boolean)}
+ * , so it doesn't have to fetch them one at a time itself.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakLinkWalkInputFormat extends InputFormat<BucketKey, RiakLinkWalk> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#createRecordReader(org.apache
+     * .hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public RecordReader<BucketKey, RiakLinkWalk> createRecordReader(InputSplit split,
+                                                                              TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        return new RiakLinkWalkRecordReader();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#getSplits(org.apache.hadoop.mapreduce
+     * .JobContext)
+     */
+    @Override public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
+        if (RiakConfig.getLinkWalkSteps(context.getConfiguration()).isEmpty()) {
+            throw new IOException("No link walk steps configured, use RiakConfig.addLinkWalkStep");
+        }
+        return new RiakInputFormat().getSplits(context);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.RiakLink;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Fetches each key of a split and walks the job's link steps from it. Every
+ * hop is one batch: the links of all the objects the walk reached with the
+ * previous step are de-duplicated and fetched concurrently, up to
+ * {@link RiakConfig#getLinkWalkConcurrency(org.apache.hadoop.conf.Configuration)}
+ * at a time, so a hop with no more targets than that costs about one round
+ * trip of latency rather than one per link. Targets are de-duplicated within
+ * a walk, not across the walks of different keys. Links to objects that are
+ * not found are dropped.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakLinkWalkRecordReader extends AbstractRiakRecordReader<RiakLinkWalk> {
+
+    private List<LinkWalkStep> steps;
+    private int concurrency;
+    private ExecutorService linkFetcher;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#initialize(org.apache.
+     * hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public void initialize(InputSplit split, TaskAttemptContext taskAttemptContext) throws IOException,
+            InterruptedException {
+        super.initialize(split, taskAttemptContext);
+        steps = RiakConfig.getLinkWalkSteps(getConfiguration());
+        concurrency = RiakConfig.getLinkWalkConcurrency(getConfiguration());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.basho.riak.hadoop.AbstractRiakRecordReader#canPrefetch()
+     */
+    @Override protected boolean canPrefetch() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#read(com.basho.riak.hadoop
+     * .BucketKey)
+     */
+    @Override protected RiakLinkWalk read(BucketKey key) throws IOException, InterruptedException {
+        final RiakResponse root = getFetcher().fetch(key);
+        final RiakLinkWalk walk = new RiakLinkWalk(root, steps.size());
+        Collection<RiakResponse> reached = Collections.singletonList(root);
+
+        for (int i = 0; i < steps.size() && !reached.isEmpty(); i++) {
+            final LinkWalkStep step = steps.get(i);
+            final Map<BucketKey, RiakResponse> linked = fetchAll(follow(step, reached));
+
+            if (step.isKeep()) {
+                walk.addLinked(i, linked);
+            }
+            reached = linked.values();
+        }
+
+        return walk;
+    }
+
+    /**
+     * @return the distinct targets of the links from <code>reached</code>
+     *         that <code>step</code> follows
+     */
+    static Set<BucketKey> follow(LinkWalkStep step, Collection<RiakResponse> reached) {
+        final Set<BucketKey> targets = new LinkedHashSet<BucketKey>();
+
+        for (RiakResponse response : reached) {
+            for (IRiakObject o : response) {
+                for (RiakLink link : o.getLinks()) {
+                    if (step.matches(link)) {
+                        targets.add(new BucketKey(link.getBucket(), link.getKey()));
+                    }
+                }
+            }
+        }
+
+        return targets;
+    }
+
+    /**
+     * Fetch all of <code>keys</code> together
+     * 
+     * @return the objects that were found, in <code>keys</code> order
+     */
+    private Map<BucketKey, RiakResponse> fetchAll(Set<BucketKey> keys) throws IOException, InterruptedException {
+        final Map<BucketKey, RiakResponse> found = new LinkedHashMap<BucketKey, RiakResponse>();
+
+        if (concurrency == 1 || keys.size() == 1) {
+            for (BucketKey key : keys) {
+                addFound(found, key, getFetcher().fetch(key));
+            }
+            return found;
+        }
+
+        final List<Future<RiakResponse>> futures = new ArrayList<Future<RiakResponse>>(keys.size());
+        try {
+            for (final BucketKey key : keys) {
+                futures.add(getLinkFetcher().submit(new Callable<RiakResponse>() {
+                    public RiakResponse call() throws Exception {
+                        return getFetcher().fetch(key);
+                    }
+                }));
+            }
+
+            int i = 0;
+            for (BucketKey key : keys) {
+                addFound(found, key, futures.get(i++).get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (Future<RiakResponse> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return found;
+    }
+
+    private static void addFound(Map<BucketKey, RiakResponse> found, BucketKey key, RiakResponse response) {
+        if (response != null && response.numberOfValues() > 0) {
+            found.put(key, response);
+        }
+    }
+
+    private synchronized ExecutorService getLinkFetcher() {
+        if (linkFetcher == null) {
+            linkFetcher = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "riak-link-fetcher");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return linkFetcher;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.basho.riak.hadoop.AbstractRiakRecordReader#close()
+     */
+    @Override public synchronized void close() throws IOException {
+        if (linkFetcher != null) {
+            linkFetcher.shutdownNow();
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Looks up objects in Riak from inside a mapper or reducer, for joining
+ * records against a dimension bucket.
+ * 
+ * Results are kept in an LRU cache bounded by
+ * {@link RiakConfig#getLookupCacheSize(Configuration)} bytes, and not found
+ * keys are cached too unless
+ * {@link RiakConfig#setLookupNotFoundCaching(Configuration, boolean)} turns
+ * it off. Concurrent lookups of the same key share one request, and
+ * {@link #getAll(Collection)} sends its misses together, up to
+ * {@link RiakConfig#getLookupConcurrency(Configuration)} at a time, through a
+ * {@link RiakFetcher} for the job's locations. Hits, misses, not founds and
+ * shared requests are counted in the task's {@link Counters}. The lookup
+ * threads only count locally, the totals are added to the task's counters
+ * (which are not thread safe) by the thread that called {@link #get(BucketKey)}
+ * or {@link #getAll(Collection)}, one caller at a time.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakLookup {
+
+    /**
+     * Counters for the lookups a task makes
+     */
+    public static enum Counters {
+        LOOKUP_HITS, LOOKUP_MISSES, LOOKUP_NOTFOUND, LOOKUP_COALESCED;
+    }
+
+    /**
+     * Rough per entry cost of the map entry, key and response objects
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final IRiakObject[] NO_OBJECTS = new IRiakObject[0];
+    private static final RiakResponse NOT_FOUND = new RiakResponse(null, NO_OBJECTS);
+
+    private final RiakFetcher fetcher;
+    private final long maxBytes;
+    private final boolean cacheNotFound;
+    private final int concurrency;
+    private final LinkedHashMap<BucketKey, Entry> cache = new LinkedHashMap<BucketKey, Entry>(1024, 0.75f, true);
+    private final ConcurrentMap<BucketKey, Future<RiakResponse>> inFlight =
+            new ConcurrentHashMap<BucketKey, Future<RiakResponse>>();
+    private final Counter[] counters = new Counter[Counters.values().length];
+    private final AtomicLong[] counts = new AtomicLong[counters.length];
+    private final long[] reported = new long[counters.length];
+    private long bytes = 0;
+    private ExecutorService executor;
+
+    /**
+     * Create a lookup for the task with <code>context</code>, reading from
+     * the job's Riak locations
+     * 
+     * @param context
+     *            the mapper or reducer context
+     */
+    public RiakLookup(TaskInputOutputContext<?, ?, ?, ?> context) {
+        this(newFetcher(context), context.getConfiguration(), context);
+    }
+
+    /**
+     * @param fetcher
+     *            the {@link RiakFetcher} to read through
+     * @param conf
+     *            the job {@link Configuration}, for the cache settings
+     * @param context
+     *            the task context for counters, may be null
+     */
+    public RiakLookup(RiakFetcher fetcher, Configuration conf, TaskInputOutputContext<?, ?, ?, ?> context) {
+        this.fetcher = fetcher;
+        this.maxBytes = RiakConfig.getLookupCacheSize(conf);
+        this.cacheNotFound = RiakConfig.isLookupNotFoundCaching(conf);
+        this.concurrency = RiakConfig.getLookupConcurrency(conf);
+
+        for (Counters counter : Counters.values()) {
+            counters[counter.ordinal()] = context == null ? null : context.getCounter(counter);
+            counts[counter.ordinal()] = new AtomicLong();
+        }
+    }
+
+    private static RiakFetcher newFetcher(TaskInputOutputContext<?, ?, ?, ?> context) {
+        Configuration conf = context.getConfiguration();
+        LocationSelector selector = new LocationSelector(RiakConfig.getRiakLocatons(conf));
+        selector.probe();
+        return new RiakFetcher(selector, conf, AdaptiveThrottle.forTask(context));
+    }
+
+    /**
+     * Look up <code>key</code>, from the cache if possible
+     * 
+     * @param key
+     *            the {@link BucketKey} to look up
+     * @return the {@link RiakResponse}, or null if <code>key</code> is not
+     *         found
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public RiakResponse get(BucketKey key) throws IOException, InterruptedException {
+        RiakResponse response = getCached(key);
+
+        if (response == null) {
+            try {
+                response = await(lookup(key, true));
+            } finally {
+                report();
+            }
+        }
+
+        return response == NOT_FOUND ? null : response;
+    }
+
+    /**
+     * Look up all of <code>keys</code>. Those that are not cached are fetched
+     * together.
+     * 
+     * @param keys
+     *            the keys to look up
+     * @return the found objects by key, in <code>keys</code> order. Keys that
+     *         are not found are left out.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Map<BucketKey, RiakResponse> getAll(Collection<BucketKey> keys) throws IOException, InterruptedException {
+        final Map<BucketKey, Future<RiakResponse>> pending = new LinkedHashMap<BucketKey, Future<RiakResponse>>();
+        final Map<BucketKey, RiakResponse> cached = new LinkedHashMap<BucketKey, RiakResponse>();
+
+        for (BucketKey key : keys) {
+            if (pending.containsKey(key) || cached.containsKey(key)) {
+                continue;
+            }
+
+            RiakResponse response = getCached(key);
+            if (response == null) {
+                pending.put(key, lookup(key, false));
+            } else {
+                cached.put(key, response);
+            }
+        }
+
+        final Map<BucketKey, RiakResponse> result = new LinkedHashMap<BucketKey, RiakResponse>();
+        try {
+            for (BucketKey key : keys) {
+                RiakResponse response = cached.get(key);
+                if (response == null && pending.containsKey(key)) {
+                    response = await(pending.get(key));
+                }
+                if (response != null && response != NOT_FOUND) {
+                    result.put(key, response);
+                }
+            }
+        } finally {
+            report();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Stop any background lookups and release the client
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        fetcher.close();
+        report();
+    }
+
+    private RiakResponse getCached(BucketKey key) {
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+
+        if (entry != null) {
+            increment(Counters.LOOKUP_HITS);
+            return entry.response;
+        }
+        return null;
+    }
+
+    /**
+     * Start a lookup of <code>key</code>, or join the one in flight
+     * 
+     * @param inline
+     *            run a new lookup on this thread, rather than in the
+     *            background
+     * @return the lookup
+     */
+    private Future<RiakResponse> lookup(final BucketKey key, boolean inline) {
+        final FutureTask<RiakResponse> task = new FutureTask<RiakResponse>(new Callable<RiakResponse>() {
+            public RiakResponse call() throws Exception {
+                try {
+                    return store(key, fetcher.fetch(key));
+                } finally {
+                    inFlight.remove(key);
+                }
+            }
+        });
+
+        Future<RiakResponse> existing = inFlight.putIfAbsent(key, task);
+
+        if (existing != null) {
+            increment(Counters.LOOKUP_COALESCED);
+            return existing;
+        }
+
+        increment(Counters.LOOKUP_MISSES);
+        if (inline) {
+            task.run();
+        } else {
+            getExecutor().execute(task);
+        }
+        return task;
+    }
+
+    private RiakResponse store(BucketKey key, RiakResponse response) {
+        if (response == null || response.numberOfValues() == 0) {
+            increment(Counters.LOOKUP_NOTFOUND);
+            if (!cacheNotFound) {
+                return NOT_FOUND;
+            }
+            response = NOT_FOUND;
+        }
+
+        final Entry entry = new Entry(response, sizeOf(key, response));
+
+        synchronized (cache) {
+            Entry old = cache.put(key, entry);
+            if (old != null) {
+                bytes -= old.size;
+            }
+            bytes += entry.size;
+
+            Iterator<Entry> eldest = cache.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().size;
+                eldest.remove();
+            }
+        }
+
+        return response;
+    }
+
+    private static long sizeOf(BucketKey key, RiakResponse response) {
+        long size = ENTRY_OVERHEAD + key.getBucketBytes().length + key.getKeyBytes().length;
+
+        for (IRiakObject o : response) {
+            byte[] value = o.getValue();
+            size += ENTRY_OVERHEAD + (value == null ? 0 : value.length);
+        }
+
+        return size;
+    }
+
+    private static RiakResponse await(Future<RiakResponse> lookup) throws IOException, InterruptedException {
+        try {
+            return lookup.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void increment(Counters counter) {
+        counts[counter.ordinal()].incrementAndGet();
+    }
+
+    /**
+     * Add what has been counted since the last report to the task's counters
+     */
+    private void report() {
+        synchronized (reported) {
+            for (int i = 0; i < counters.length; i++) {
+                long count = counts[i].get();
+                if (counters[i] != null && count != reported[i]) {
+                    counters[i].increment(count - reported[i]);
+                    reported[i] = count;
+                }
+            }
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "riak-lookup");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static final class Entry {
+        private final RiakResponse response;
+        private final long size;
+
+        private Entry(RiakResponse response, long size) {
+            this.response = response;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * Pushes projection and filtering down to Riak. Splits are planned as for
+ * {@link RiakInputFormat}, but instead of fetching each value the record
+ * reader sends the split's keys to Riak as the inputs of a map/reduce query
+ * made of the phases added with
+ * {@link RiakConfig#addInputMapPhase(Configuration, com.basho.riak.client.query.functions.Function, Object)}
+ * . The mapper gets one record per element of the query's result, as JSON
+ * {@link Text}, keyed by its position in the split.
+ * 
+ * A map phase that returns an empty list for an object filters it out, and
+ * one that returns a few fields projects it, so only what the job needs
+ * crosses the network.
+ * 
+ * Add reduce phases with
+ * {@link RiakConfig#addInputReducePhase(Configuration, com.basho.riak.client.query.functions.Function, Object)}
+ * to pre-aggregate on the server. Each batch of a split's keys is reduced
+ * separately, so the mapper sees partial aggregates (a count or sum per batch,
+ * say) and should pass them on for the Hadoop reducer to combine.
+ * 
+ * Incremental jobs must have a last modified index, see
+ * {@link RiakConfig#setLastModifiedIndex(Configuration, String, String)}, and
+ * {@link Checkpoint}s are not supported. Input limits and
+ * {@link CompletionLedger}s are.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakMapReduceInputFormat extends InputFormat<LongWritable, Text> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#createRecordReader(org.apache
+     * .hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        return new RiakMapReduceRecordReader();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#getSplits(org.apache.hadoop.mapreduce
+     * .JobContext)
+     */
+    @Override public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
+        final Configuration conf = context.getConfiguration();
+
+        if (RiakConfig.getInputPhases(conf).isEmpty()) {
+            throw new IOException("No map/reduce phases configured, "
+                                  + "use RiakConfig.addInputMapPhase or addInputReducePhase");
+        }
+        if (RiakConfig.getIncrementalName(conf) != null && RiakConfig.getLastModifiedIndex(conf) == null) {
+            // the phases read every input, there's no HEAD check to skip the unmodified ones
+            throw new IOException("Incremental jobs with RiakMapReduceInputFormat need a last modified index");
+        }
+        if (RiakConfig.getCheckpointInterval(conf) > 0) {
+            // a batch's results can't be resumed part way through
+            throw new IOException("RiakMapReduceInputFormat does not support checkpoints");
+        }
+        return new RiakInputFormat().getSplits(context);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.basho.riak.client.IRiakClient;
+import com.basho.riak.client.RiakException;
+import com.basho.riak.client.query.BucketKeyMapReduce;
+import com.basho.riak.client.query.MapReduceResult;
+import com.basho.riak.hadoop.config.ClientFactory;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+
+/**
+ * Runs the job's map/reduce phases on a {@link RiakInputSplit}'s keys, a batch
+ * at a time, and emits each element of the results. A batch that fails is
+ * retried on the split's next candidate location, and later batches stick
+ * with the location that last worked. A reader that runs every batch of its
+ * split records it in the job's {@link CompletionLedger}.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakMapReduceRecordReader extends RecordReader<LongWritable, Text> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final LongWritable key = new LongWritable(-1);
+    private final Text value = new Text();
+
+    private RiakLocation[] locations;
+    private IRiakClient[] clients;
+    private int current = 0;
+    private List<MapReducePhase> phases;
+    private int batchSize;
+    private int timeout;
+    private AdaptiveThrottle throttle;
+    private Iterator<BucketKey> inputs;
+    private Iterator<JsonNode> results = Collections.<JsonNode> emptyList().iterator();
+    private long total;
+    private long sent;
+    private InputLimit limit;
+    private RiakInputSplit split;
+    private TaskAttemptContext context;
+    private boolean completed = false;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.RecordReader#initialize(org.apache.hadoop
+     * .mapreduce.InputSplit, org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public void initialize(InputSplit split, TaskAttemptContext context) throws IOException,
+            InterruptedException {
+        final RiakInputSplit inputSplit = (RiakInputSplit) split;
+        final Configuration conf = context.getConfiguration();
+        final Collection<BucketKey> keys = inputSplit.getInputs();
+
+        locations = inputSplit.getRiakLocations();
+        clients = new IRiakClient[locations.length];
+        phases = RiakConfig.getInputPhases(conf);
+        batchSize = RiakConfig.getInputPhasesBatchSize(conf);
+        timeout = RiakConfig.getFetchTimeout(conf);
+        throttle = AdaptiveThrottle.forTask(context);
+        inputs = keys.iterator();
+        total = keys.size();
+        limit = InputLimit.get(context);
+        this.split = inputSplit;
+        this.context = context;
+
+        if (phases.isEmpty()) {
+            throw new IOException("No map/reduce phases configured");
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#nextKeyValue()
+     */
+    @Override public boolean nextKeyValue() throws IOException, InterruptedException {
+        if (limit != null && limit.reached()) {
+            return false;
+        }
+
+        while (!results.hasNext()) {
+            if (!inputs.hasNext()) {
+                complete();
+                return false;
+            }
+            results = execute(nextBatch());
+        }
+
+        key.set(key.get() + 1);
+        value.set(results.next().toString());
+        if (limit != null) {
+            limit.emitted();
+        }
+        return true;
+    }
+
+    /**
+     * Every batch has run, record the split in the job's
+     * {@link CompletionLedger}
+     */
+    private void complete() throws IOException {
+        if (!completed && CompletionLedger.isEnabled(context.getConfiguration())) {
+            CompletionLedger.completed(context, split);
+        }
+        completed = true;
+    }
+
+    private List<BucketKey> nextBatch() {
+        final List<BucketKey> batch = new ArrayList<BucketKey>(batchSize);
+
+        while (inputs.hasNext() && batch.size() < batchSize) {
+            batch.add(inputs.next());
+        }
+
+        sent += batch.size();
+        return batch;
+    }
+
+    /**
+     * Run the phases over <code>batch</code>, trying each candidate location
+     * in turn, starting with the last one that worked.
+     * 
+     * @param batch
+     *            the keys to use as inputs
+     * @return the elements of the result
+     * @throws IOException
+     *             if the query fails at every location
+     * @throws InterruptedException
+     */
+    private Iterator<JsonNode> execute(List<BucketKey> batch) throws IOException, InterruptedException {
+        RiakException lastFailure = null;
+
+        for (int attempt = 0; attempt < locations.length; attempt++) {
+            final int i = (current + attempt) % locations.length;
+            throttle.acquire();
+            final long start = System.nanoTime();
+
+            try {
+                final MapReduceResult result = execute(getClient(i), batch);
+                throttle.success(System.nanoTime() - start);
+                current = i;
+                return parse(result.getResultRaw());
+            } catch (RiakException e) {
+                throttle.failure();
+                lastFailure = e;
+            }
+        }
+
+        throw new IOException(lastFailure);
+    }
+
+    private MapReduceResult execute(IRiakClient client, List<BucketKey> batch) throws RiakException {
+        final BucketKeyMapReduce mr = client.mapReduce();
+
+        for (BucketKey bk : batch) {
+            mr.addInput(bk.getBucket(), bk.getKey());
+        }
+        for (MapReducePhase phase : phases) {
+            phase.addTo(mr);
+        }
+        if (timeout > 0) {
+            mr.timeout(timeout);
+        }
+
+        return mr.execute();
+    }
+
+    private static Iterator<JsonNode> parse(String json) throws IOException {
+        if (json == null) {
+            return Collections.<JsonNode> emptyList().iterator();
+        }
+
+        final JsonNode node = OBJECT_MAPPER.readTree(json);
+
+        if (node == null || node.isNull()) {
+            return Collections.<JsonNode> emptyList().iterator();
+        } else if (node.isArray()) {
+            return node.iterator();
+        } else {
+            return Collections.singletonList(node).iterator();
+        }
+    }
+
+    private IRiakClient getClient(int i) throws RiakException {
+        if (clients[i] == null) {
+            clients[i] = newClient(locations[i]);
+        }
+        return clients[i];
+    }
+
+    /**
+     * Create a client for <code>location</code>
+     * 
+     * @param location
+     * @return a new {@link IRiakClient}
+     * @throws RiakException
+     */
+    protected IRiakClient newClient(RiakLocation location) throws RiakException {
+        return ClientFactory.getClient(location);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentKey()
+     */
+    @Override public LongWritable getCurrentKey() throws IOException, InterruptedException {
+        return key;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentValue()
+     */
+    @Override public Text getCurrentValue() throws IOException, InterruptedException {
+        return value;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#getProgress()
+     */
+    @Override public float getProgress() throws IOException, InterruptedException {
+        return total == 0 ? 1 : (float) sent / total;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.mapreduce.RecordReader#close()
+     */
+    @Override public void close() throws IOException {
+        if (limit != null) {
+            limit.close();
+        }
+    }
+}
@@ -15,7 +15,9 @@ package com.basho.riak.hadoop;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 
 import org.apache.hadoop.mapreduce.Mapper;
 
@@ -29,6 +31,12 @@ import com.basho.riak.client.raw.RiakResponse;
  * work with domain specific types and handle sibling values in your
  * {@link Mapper#map} method
  * 
+ * Objects with a single value are converted and passed straight to
+ * {@link #map(BucketKey, Object, Context)}, the {@link ConflictResolver} is
+ * only used when there are siblings. If a raw {@link ConflictResolver} is
+ * provided siblings are resolved on their {@link IRiakObject}s (e.g. by last
+ * modified date) and only the winner is converted.
+ * 
  * @author russell
  * @param <T>
  *            the type for the input value
@@ -42,6 +50,7 @@ public abstract class RiakMapper<T, OK, OV> extends Mapper<BucketKey, RiakRespon
 
     private final Converter<T> converter;
     private final ConflictResolver<T> resolver;
+    private final ConflictResolver<IRiakObject> rawResolver;
 
     /**
      * Create a {@link Mapper} that will use the provided {@link Converter} and
@@ -54,8 +63,27 @@ public abstract class RiakMapper<T, OK, OV> extends Mapper<BucketKey, RiakRespon
      *            a {@link ConflictResolver}
      */
     public RiakMapper(Converter<T> converter, ConflictResolver<T> resolver) {
+        this(converter, resolver, null);
+    }
+
+    /**
+     * Create a {@link Mapper} that resolves siblings with
+     * <code>rawResolver</code> before converting, so only the winning sibling
+     * is converted
+     * 
+     * @param converter
+     *            a {@link Converter}
+     * @param resolver
+     *            a {@link ConflictResolver}, used if <code>rawResolver</code>
+     *            is null
+     * @param rawResolver
+     *            a {@link ConflictResolver} for the unconverted siblings, may
+     *            be null
+     */
+    public RiakMapper(Converter<T> converter, ConflictResolver<T> resolver, ConflictResolver<IRiakObject> rawResolver) {
         this.converter = converter;
         this.resolver = resolver;
+        this.rawResolver = rawResolver;
     }
 
     /*
@@ -67,14 +95,27 @@ public abstract class RiakMapper<T, OK, OV> extends Mapper<BucketKey, RiakRespon
     @Override public void map(BucketKey key, RiakResponse value, Context context) throws IOException,
             InterruptedException {
 
-        // convert, conflict resolve
-        final Collection<T> siblings = new ArrayList<T>(value.numberOfValues());
+        final int numberOfValues = value.numberOfValues();
 
-        for (IRiakObject o : value) {
-            siblings.add(converter.toDomain(o));
-        }
+        if (numberOfValues == 1) {
+            // no siblings, nothing to resolve
+            map(key, converter.toDomain(value.getRiakObjects()[0]), context);
+        } else if (numberOfValues == 0) {
+            map(key, resolver.resolve(Collections.<T> emptyList()), context);
+        } else if (rawResolver != null) {
+            // resolve, then convert the winner
+            IRiakObject resolved = rawResolver.resolve(Arrays.asList(value.getRiakObjects()));
+            map(key, resolved == null ? null : converter.toDomain(resolved), context);
+        } else {
+            // convert, conflict resolve
+            final Collection<T> siblings = new ArrayList<T>(numberOfValues);
+
+            for (IRiakObject o : value) {
+                siblings.add(converter.toDomain(o));
+            }
 
-        map(key, resolver.resolve(siblings), context);
+            map(key, resolver.resolve(siblings), context);
+        }
     }
 
     /**
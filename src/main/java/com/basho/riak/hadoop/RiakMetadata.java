@@ -0,0 +1,344 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.builders.RiakObjectBuilder;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.query.indexes.BinIndex;
+import com.basho.riak.client.query.indexes.IntIndex;
+import com.basho.riak.client.raw.RiakResponse;
+
+/**
+ * The metadata (but no values) of a Riak object, for jobs that only need to
+ * know about vclocks, last modified dates, content types, user meta or
+ * indexes. Each sibling's metadata is available from {@link #getSiblings()}.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakMetadata implements Writable {
+
+    private byte[] vclock;
+    private final List<Sibling> siblings = new ArrayList<Sibling>(1);
+
+    public RiakMetadata() {}
+
+    /**
+     * Copy the metadata from a {@link RiakResponse}
+     * 
+     * @param response
+     *            a response from a fetch or head request
+     */
+    public RiakMetadata(RiakResponse response) {
+        set(response);
+    }
+
+    /**
+     * Replace this instance's metadata with that from <code>response</code>
+     * 
+     * @param response
+     *            a response from a fetch or head request
+     */
+    public void set(RiakResponse response) {
+        VClock vc = response.getVclock();
+        vclock = vc == null ? null : vc.getBytes();
+        int count = 0;
+
+        for (IRiakObject o : response) {
+            sibling(count++).set(o);
+        }
+
+        truncate(count);
+    }
+
+    /**
+     * Get the i'th {@link Sibling}, adding one if there are not enough.
+     * Siblings are reused so a reader can recycle one instance.
+     */
+    private Sibling sibling(int i) {
+        if (i == siblings.size()) {
+            siblings.add(new Sibling());
+        }
+        return siblings.get(i);
+    }
+
+    private void truncate(int size) {
+        while (siblings.size() > size) {
+            siblings.remove(siblings.size() - 1);
+        }
+    }
+
+    /**
+     * @return the vclock bytes, or null if the object was not found
+     */
+    public byte[] getVClock() {
+        return vclock;
+    }
+
+    /**
+     * @return true if the object was found
+     */
+    public boolean exists() {
+        return !siblings.isEmpty();
+    }
+
+    /**
+     * @return the number of siblings
+     */
+    public int numberOfValues() {
+        return siblings.size();
+    }
+
+    /**
+     * @return the metadata for each sibling
+     */
+    public List<Sibling> getSiblings() {
+        return Collections.unmodifiableList(siblings);
+    }
+
+    /**
+     * @return the most recent last modified date of all the siblings, or null
+     *         if the object was not found
+     */
+    public Date getLastModified() {
+        long lastModified = -1;
+
+        for (Sibling s : siblings) {
+            lastModified = Math.max(lastModified, s.lastModified);
+        }
+
+        return lastModified == -1 ? null : new Date(lastModified);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+     */
+    public void write(DataOutput out) throws IOException {
+        if (vclock == null) {
+            WritableUtils.writeVInt(out, -1);
+        } else {
+            WritableUtils.writeVInt(out, vclock.length);
+            out.write(vclock);
+        }
+
+        WritableUtils.writeVInt(out, siblings.size());
+        for (Sibling s : siblings) {
+            s.write(out);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+     */
+    public void readFields(DataInput in) throws IOException {
+        int vclockLength = WritableUtils.readVInt(in);
+        if (vclockLength == -1) {
+            vclock = null;
+        } else {
+            vclock = new byte[vclockLength];
+            in.readFully(vclock);
+        }
+
+        int numberOfSiblings = WritableUtils.readVInt(in);
+        for (int i = 0; i < numberOfSiblings; i++) {
+            sibling(i).readFields(in);
+        }
+        truncate(numberOfSiblings);
+    }
+
+    /**
+     * The metadata for one sibling value
+     */
+    public static class Sibling {
+        private String contentType;
+        private String vtag;
+        private long lastModified = -1;
+        private final Map<String, String> usermeta = new HashMap<String, String>();
+        private final Map<String, Set<String>> binIndexes = new HashMap<String, Set<String>>();
+        private final Map<String, Set<Integer>> intIndexes = new HashMap<String, Set<Integer>>();
+
+        Sibling() {}
+
+        void set(IRiakObject o) {
+            clear();
+            contentType = o.getContentType();
+            vtag = o.getVtag();
+            Date lm = o.getLastModified();
+            lastModified = lm == null ? -1 : lm.getTime();
+            usermeta.putAll(o.getMeta());
+
+            for (Map.Entry<BinIndex, Set<String>> index : o.allBinIndexes().entrySet()) {
+                binIndexes.put(index.getKey().getName(), new HashSet<String>(index.getValue()));
+            }
+            for (Map.Entry<IntIndex, Set<Integer>> index : o.allIntIndexes().entrySet()) {
+                intIndexes.put(index.getKey().getName(), new HashSet<Integer>(index.getValue()));
+            }
+        }
+
+        /**
+         * @return the content type
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return the vtag
+         */
+        public String getVtag() {
+            return vtag;
+        }
+
+        /**
+         * @return the last modified date, or null if unknown
+         */
+        public Date getLastModified() {
+            return lastModified == -1 ? null : new Date(lastModified);
+        }
+
+        /**
+         * @return the user meta data
+         */
+        public Map<String, String> getUsermeta() {
+            return Collections.unmodifiableMap(usermeta);
+        }
+
+        /**
+         * @return the binary indexes, by index name
+         */
+        public Map<String, Set<String>> getBinIndexes() {
+            return Collections.unmodifiableMap(binIndexes);
+        }
+
+        /**
+         * @return the integer indexes, by index name
+         */
+        public Map<String, Set<Integer>> getIntIndexes() {
+            return Collections.unmodifiableMap(intIndexes);
+        }
+
+        /**
+         * Copy this sibling's metadata to <code>builder</code>
+         */
+        RiakObjectBuilder copyTo(RiakObjectBuilder builder) {
+            builder.withContentType(contentType).withVtag(vtag).withUsermeta(new HashMap<String, String>(usermeta));
+
+            if (lastModified != -1) {
+                builder.withLastModified(lastModified);
+            }
+            for (Map.Entry<String, Set<String>> index : binIndexes.entrySet()) {
+                for (String value : index.getValue()) {
+                    builder.addIndex(index.getKey(), value);
+                }
+            }
+            for (Map.Entry<String, Set<Integer>> index : intIndexes.entrySet()) {
+                for (Integer value : index.getValue()) {
+                    builder.addIndex(index.getKey(), value);
+                }
+            }
+
+            return builder;
+        }
+
+        void write(DataOutput out) throws IOException {
+            WritableUtils.writeString(out, contentType);
+            WritableUtils.writeString(out, vtag);
+            WritableUtils.writeVLong(out, lastModified);
+
+            WritableUtils.writeVInt(out, usermeta.size());
+            for (Map.Entry<String, String> e : usermeta.entrySet()) {
+                WritableUtils.writeString(out, e.getKey());
+                WritableUtils.writeString(out, e.getValue());
+            }
+
+            WritableUtils.writeVInt(out, binIndexes.size());
+            for (Map.Entry<String, Set<String>> index : binIndexes.entrySet()) {
+                WritableUtils.writeString(out, index.getKey());
+                WritableUtils.writeVInt(out, index.getValue().size());
+                for (String value : index.getValue()) {
+                    WritableUtils.writeString(out, value);
+                }
+            }
+
+            WritableUtils.writeVInt(out, intIndexes.size());
+            for (Map.Entry<String, Set<Integer>> index : intIndexes.entrySet()) {
+                WritableUtils.writeString(out, index.getKey());
+                WritableUtils.writeVInt(out, index.getValue().size());
+                for (Integer value : index.getValue()) {
+                    WritableUtils.writeVInt(out, value);
+                }
+            }
+        }
+
+        private void clear() {
+            usermeta.clear();
+            binIndexes.clear();
+            intIndexes.clear();
+        }
+
+        void readFields(DataInput in) throws IOException {
+            clear();
+            contentType = WritableUtils.readString(in);
+            vtag = WritableUtils.readString(in);
+            lastModified = WritableUtils.readVLong(in);
+
+            int size = WritableUtils.readVInt(in);
+            for (int i = 0; i < size; i++) {
+                usermeta.put(WritableUtils.readString(in), WritableUtils.readString(in));
+            }
+
+            size = WritableUtils.readVInt(in);
+            for (int i = 0; i < size; i++) {
+                String name = WritableUtils.readString(in);
+                int values = WritableUtils.readVInt(in);
+                Set<String> index = new HashSet<String>(values);
+                for (int j = 0; j < values; j++) {
+                    index.add(WritableUtils.readString(in));
+                }
+                binIndexes.put(name, index);
+            }
+
+            size = WritableUtils.readVInt(in);
+            for (int i = 0; i < size; i++) {
+                String name = WritableUtils.readString(in);
+                int values = WritableUtils.readVInt(in);
+                Set<Integer> index = new HashSet<Integer>(values);
+                for (int j = 0; j < values; j++) {
+                    index.add(WritableUtils.readVInt(in));
+                }
+                intIndexes.put(name, index);
+            }
+        }
+    }
+}
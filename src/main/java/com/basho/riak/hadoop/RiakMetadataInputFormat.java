@@ -0,0 +1,60 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Metadata only version of {@link RiakInputFormat}. Splits the input in the
+ * same way, but the mapper gets a {@link RiakMetadata} for each key rather
+ * than the whole object. Use it for jobs that never look at values, e.g.
+ * "find objects not modified in 90 days".
+ * 
+ * @author russell
+ * 
+ */
+public class RiakMetadataInputFormat extends InputFormat<BucketKey, RiakMetadata> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#createRecordReader(org.apache
+     * .hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
+     */
+    @Override public RecordReader<BucketKey, RiakMetadata> createRecordReader(InputSplit split,
+                                                                              TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        return new RiakMetadataRecordReader();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.hadoop.mapreduce.InputFormat#getSplits(org.apache.hadoop.mapreduce
+     * .JobContext)
+     */
+    @Override public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
+        return new RiakInputFormat().getSplits(context);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+
+/**
+ * Reads just the metadata of each object with a head request, no values are
+ * transferred.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakMetadataRecordReader extends AbstractRiakRecordReader<RiakMetadata> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.basho.riak.hadoop.AbstractRiakRecordReader#canPrefetch()
+     */
+    @Override protected boolean canPrefetch() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#read(com.basho.riak.hadoop
+     * .BucketKey)
+     */
+    @Override protected RiakMetadata read(BucketKey key) throws IOException, InterruptedException {
+        return new RiakMetadata(getFetcher().head(key));
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * A cache of fetched objects on a task tracker's local disk, for iterative
+ * jobs that read the same bucket over and over.
+ * 
+ * Objects are appended to memory mapped segment files in
+ * {@link RiakConfig#getObjectCacheDirectory(Configuration)}, so every task on
+ * the node (and every run of the job) shares them. Each process indexes the
+ * segments as it finds them, appends under a file lock, and deletes the
+ * oldest segment once the cache is bigger than
+ * {@link RiakConfig#getObjectCacheSize(Configuration)}. An entry read from
+ * the oldest segments is appended again, so the segments approximate an LRU
+ * list.
+ * 
+ * Every entry ends with a checksum. A task killed while appending leaves a
+ * torn entry at the end of a segment: scans stop indexing a segment at its
+ * first bad entry, and the next append starts a new segment rather than
+ * writing after it.
+ * 
+ * A cached object is only used if its vclock matches the one the caller got
+ * from a HEAD request, so a changed object is never served stale and an
+ * unchanged one costs a request with no value.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakObjectCache {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String LOCK_FILE = "lock";
+    private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 256 * 1024 * 1024;
+    /**
+     * Entries read from this fraction of the oldest segments are promoted
+     */
+    private static final int PROMOTE_FRACTION = 4;
+    /**
+     * How much of an entry to read to get its key when scanning
+     */
+    private static final int KEY_PREFIX = 512;
+    /**
+     * Each entry is its length, the entry, then a CRC32 of the entry
+     */
+    private static final int ENTRY_OVERHEAD = 8;
+
+    private static final Map<File, RiakObjectCache> CACHES = new HashMap<File, RiakObjectCache>();
+
+    private final File dir;
+    private final long maxBytes;
+    private final int segmentSize;
+    private final Map<BucketKey, Location> index = new HashMap<BucketKey, Location>();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+    private final DataOutputBuffer out = new DataOutputBuffer();
+    private final DataInputBuffer in = new DataInputBuffer();
+    private final RiakResponseWritable writable = new RiakResponseWritable();
+
+    /**
+     * @param dir
+     *            the local cache directory
+     * @param maxBytes
+     *            the size to keep the cache under
+     * @throws IOException
+     */
+    public RiakObjectCache(File dir, long maxBytes) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create object cache directory " + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.segmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxBytes / 16));
+        refresh();
+    }
+
+    /**
+     * @param conf
+     *            the job {@link Configuration}
+     * @return this JVM's cache for the job's cache directory, or null if the
+     *         job doesn't use one
+     * @throws IOException
+     */
+    public static RiakObjectCache get(Configuration conf) throws IOException {
+        final String path = RiakConfig.getObjectCacheDirectory(conf);
+
+        if (path == null) {
+            return null;
+        }
+
+        final File dir = new File(path).getAbsoluteFile();
+        synchronized (CACHES) {
+            RiakObjectCache cache = CACHES.get(dir);
+            if (cache == null) {
+                cache = new RiakObjectCache(dir, RiakConfig.getObjectCacheSize(conf));
+                CACHES.put(dir, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @param key
+     *            the key to look up
+     * @param vclock
+     *            the current vclock of <code>key</code>
+     * @return the cached object, or null if it isn't cached or has a different
+     *         vclock
+     * @throws IOException
+     */
+    public synchronized RiakResponse get(BucketKey key, byte[] vclock) throws IOException {
+        Location location = index.get(key);
+
+        if (location == null || !segments.containsKey(location.segment)) {
+            refresh();
+            location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+        }
+
+        final ByteBuffer buffer;
+        try {
+            buffer = segments.get(location.segment).map(location.offset + location.length);
+        } catch (FileNotFoundException e) {
+            // evicted by another process
+            refresh();
+            return null;
+        }
+        final byte[] entry = new byte[location.length];
+        final ByteBuffer b = buffer.duplicate();
+        b.position(location.offset);
+        b.get(entry);
+
+        in.reset(entry, entry.length);
+        final BucketKey cachedKey = BucketKey.read(in);
+        writable.readFields(in);
+
+        if (!cachedKey.equals(key) || !Arrays.equals(vclock, writable.getVClock())) {
+            return null;
+        }
+
+        if (location.segment < promoteBelow()) {
+            append(key, entry);
+        }
+
+        return writable.toRiakResponse();
+    }
+
+    /**
+     * Cache <code>response</code> for <code>key</code>
+     * 
+     * @param key
+     *            the key
+     * @param response
+     *            a fetched object, with its vclock
+     * @throws IOException
+     */
+    public synchronized void put(BucketKey key, RiakResponse response) throws IOException {
+        if (response.getVclock() == null) {
+            return;
+        }
+
+        out.reset();
+        key.write(out);
+        writable.set(key, response);
+        writable.write(out);
+
+        final byte[] entry = new byte[out.getLength()];
+        System.arraycopy(out.getData(), 0, entry, 0, entry.length);
+        append(key, entry);
+    }
+
+    /**
+     * Append an entry to the newest segment, under the cache lock
+     */
+    private void append(BucketKey key, byte[] entry) throws IOException {
+        if (entry.length + ENTRY_OVERHEAD > segmentSize) {
+            return;
+        }
+
+        final RandomAccessFile lockFile = new RandomAccessFile(new File(dir, LOCK_FILE), "rw");
+        try {
+            final FileLock lock = lockFile.getChannel().lock();
+            try {
+                refresh();
+
+                Segment segment = segments.isEmpty() ? null : segments.get(segments.lastKey());
+                // holding the lock, anything past the scanned entries is torn
+                if (segment == null || segment.file.length() != segment.scanned
+                    || segment.scanned + ENTRY_OVERHEAD + entry.length > segmentSize) {
+                    int id = segment == null ? 0 : segment.id + 1;
+                    segment = new Segment(id, new File(dir, SEGMENT_PREFIX + id));
+                    segments.put(id, segment);
+                }
+
+                final ByteBuffer framed = ByteBuffer.allocate(entry.length + ENTRY_OVERHEAD);
+                framed.putInt(entry.length).put(entry).putInt(checksum(entry, 0, entry.length));
+
+                final RandomAccessFile raf = new RandomAccessFile(segment.file, "rw");
+                final long offset;
+                try {
+                    offset = raf.length();
+                    raf.seek(offset);
+                    raf.write(framed.array());
+                } finally {
+                    raf.close();
+                }
+
+                segment.scanned = offset + framed.capacity();
+                index.put(key, new Location(segment.id, (int) offset + 4, entry.length));
+                evict();
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    /**
+     * Delete the oldest segments until the cache fits
+     */
+    private void evict() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.file.length();
+        }
+
+        while (total > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.remove(segments.firstKey());
+            total -= oldest.file.length();
+            oldest.file.delete();
+        }
+    }
+
+    private int promoteBelow() {
+        if (segments.size() < 2) {
+            return Integer.MIN_VALUE;
+        }
+        return segments.firstKey() + Math.max(1, segments.size() / PROMOTE_FRACTION);
+    }
+
+    /**
+     * Pick up segments that were added, grown or deleted by other processes
+     */
+    private void refresh() throws IOException {
+        final String[] names = dir.list(new FilenameFilter() {
+            public boolean accept(File d, String name) {
+                return name.startsWith(SEGMENT_PREFIX);
+            }
+        });
+
+        final Map<Integer, Segment> found = new HashMap<Integer, Segment>();
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length()));
+                    Segment segment = segments.get(id);
+                    found.put(id, segment == null ? new Segment(id, new File(dir, name)) : segment);
+                } catch (NumberFormatException e) {
+                    // not ours
+                }
+            }
+        }
+
+        segments.keySet().retainAll(found.keySet());
+        segments.putAll(found);
+
+        for (Iterator<Location> it = index.values().iterator(); it.hasNext();) {
+            if (!segments.containsKey(it.next().segment)) {
+                it.remove();
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            scan(segment);
+        }
+    }
+
+    /**
+     * Index any complete entries added to <code>segment</code> since it was
+     * last scanned. Stops at an entry that is still being written, and gives
+     * up on the segment at one that is corrupt.
+     */
+    private void scan(Segment segment) throws IOException {
+        final long length = segment.file.length();
+
+        if (segment.corrupt || length <= segment.scanned) {
+            return;
+        }
+
+        final ByteBuffer buffer = segment.map(length);
+        int position = (int) segment.scanned;
+
+        while (position + 4 <= length) {
+            final int entryLength = buffer.getInt(position);
+            if (entryLength < 0 || entryLength + ENTRY_OVERHEAD > segmentSize) {
+                segment.corrupt = true;
+                break;
+            }
+            if (position + ENTRY_OVERHEAD + entryLength > length) {
+                // still being written, or torn
+                break;
+            }
+            if (buffer.getInt(position + 4 + entryLength) != checksum(buffer, position + 4, entryLength)) {
+                segment.corrupt = true;
+                break;
+            }
+
+            BucketKey key;
+            try {
+                key = readKey(buffer, position + 4, Math.min(entryLength, KEY_PREFIX));
+            } catch (EOFException e) {
+                // a long key
+                key = readKey(buffer, position + 4, entryLength);
+            }
+
+            index.put(key, new Location(segment.id, position + 4, entryLength));
+            position += ENTRY_OVERHEAD + entryLength;
+        }
+
+        segment.scanned = position;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer b = buffer.duplicate();
+        b.position(offset);
+        b.get(bytes);
+        return checksum(bytes, 0, length);
+    }
+
+    private BucketKey readKey(ByteBuffer buffer, int offset, int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer b = buffer.duplicate();
+        b.position(offset);
+        b.get(bytes);
+        in.reset(bytes, length);
+        return BucketKey.read(in);
+    }
+
+    private static final class Location {
+        private final int segment;
+        private final int offset;
+        private final int length;
+
+        private Location(int segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private long scanned = 0;
+        private boolean corrupt = false;
+        private MappedByteBuffer buffer;
+
+        private Segment(int id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+
+        /**
+         * @return a read only mapping of at least <code>length</code> bytes
+         */
+        private ByteBuffer map(long length) throws IOException {
+            if (buffer == null || buffer.capacity() < length) {
+                final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                try {
+                    buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                } finally {
+                    raf.close();
+                }
+            }
+            return buffer;
+        }
+    }
+}
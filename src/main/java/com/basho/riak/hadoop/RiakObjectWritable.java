@@ -0,0 +1,348 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.builders.RiakObjectBuilder;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.hadoop.RiakMetadata.Sibling;
+
+/**
+ * A compact {@link WritableComparable} for shuffling a single Riak object (one
+ * sibling) from map to reduce. Carries the value bytes, vclock, content type,
+ * user meta and indexes. The serialized form starts with the bucket and key
+ * in the {@link BucketKey} layout so the registered raw {@link Comparator}
+ * can sort on bucket/key without deserializing.
+ * 
+ * Values can be deflated by calling {@link #setCompressed(boolean)} before the
+ * object is written, the reading side doesn't need to know.
+ * 
+ * {@link RiakRecordWriter} stores a {@link RiakObjectWritable} as is, without
+ * converting it to JSON.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakObjectWritable implements WritableComparable<RiakObjectWritable> {
+
+    static {
+        WritableComparator.define(RiakObjectWritable.class, new Comparator());
+    }
+
+    /**
+     * Values smaller than this aren't worth deflating
+     */
+    private static final int MIN_COMPRESS_LENGTH = 128;
+    private static final byte COMPRESSED = 1;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Text bucket = new Text();
+    private final Text key = new Text();
+    private byte[] vclock;
+    private final Sibling metadata = new Sibling();
+    private byte[] value = EMPTY;
+    private boolean compressed;
+
+    public RiakObjectWritable() {}
+
+    /**
+     * @param riakObject
+     *            the object to copy
+     */
+    public RiakObjectWritable(IRiakObject riakObject) {
+        set(riakObject);
+    }
+
+    /**
+     * Replace this instance's contents with a copy of <code>riakObject</code>
+     * 
+     * @param riakObject
+     *            the object to copy
+     */
+    public void set(IRiakObject riakObject) {
+        bucket.set(riakObject.getBucket());
+        key.set(riakObject.getKey());
+        VClock vc = riakObject.getVClock();
+        vclock = vc == null ? null : vc.getBytes();
+        metadata.set(riakObject);
+        value = riakObject.getValue() == null ? EMPTY : riakObject.getValue();
+    }
+
+    /**
+     * @param compressed
+     *            true to deflate the value when this object is written
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * @return the bucket
+     */
+    public String getBucket() {
+        return bucket.toString();
+    }
+
+    /**
+     * @return the key
+     */
+    public String getKey() {
+        return key.toString();
+    }
+
+    /**
+     * @return the value bytes
+     */
+    public byte[] getValue() {
+        return value;
+    }
+
+    /**
+     * @return the vclock bytes, may be null
+     */
+    public byte[] getVClock() {
+        return vclock;
+    }
+
+    /**
+     * @return the metadata
+     */
+    public Sibling getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return an {@link IRiakObject} with this object's bucket and key
+     */
+    public IRiakObject toRiakObject() {
+        return toRiakObject(getBucket(), getKey());
+    }
+
+    /**
+     * @param bucket
+     *            the bucket for the new object
+     * @param key
+     *            the key for the new object
+     * @return an {@link IRiakObject} with this object's value and metadata
+     */
+    public IRiakObject toRiakObject(String bucket, String key) {
+        return toRiakObject(bucket, key, vclock, metadata, value);
+    }
+
+    static IRiakObject toRiakObject(String bucket, String key, byte[] vclock, Sibling metadata, byte[] value) {
+        RiakObjectBuilder builder = RiakObjectBuilder.newBuilder(bucket, key).withValue(value);
+
+        if (vclock != null) {
+            builder.withVClock(vclock);
+        }
+
+        return metadata.copyTo(builder).build();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+     */
+    public void write(DataOutput out) throws IOException {
+        bucket.write(out);
+        key.write(out);
+        writeBytes(out, vclock);
+        metadata.write(out);
+        writeValue(out, value, compressed);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+     */
+    public void readFields(DataInput in) throws IOException {
+        bucket.readFields(in);
+        key.readFields(in);
+        vclock = readBytes(in);
+        metadata.readFields(in);
+        value = readValue(in);
+    }
+
+    /**
+     * Write <code>bytes</code> as a VInt length and the bytes, null is
+     * written as length -1
+     */
+    static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            WritableUtils.writeVInt(out, -1);
+        } else {
+            WritableUtils.writeVInt(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static byte[] readBytes(DataInput in) throws IOException {
+        int length = WritableUtils.readVInt(in);
+
+        if (length == -1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Write a flag byte and the value, deflated if <code>compress</code> and
+     * deflating makes it smaller
+     */
+    static void writeValue(DataOutput out, byte[] value, boolean compress) throws IOException {
+        if (compress && value.length >= MIN_COMPRESS_LENGTH) {
+            byte[] deflated = deflate(value);
+            if (deflated != null) {
+                out.writeByte(COMPRESSED);
+                WritableUtils.writeVInt(out, value.length);
+                writeBytes(out, deflated);
+                return;
+            }
+        }
+
+        out.writeByte(0);
+        writeBytes(out, value);
+    }
+
+    static byte[] readValue(DataInput in) throws IOException {
+        byte flags = in.readByte();
+
+        if ((flags & COMPRESSED) == 0) {
+            return readBytes(in);
+        }
+
+        int length = WritableUtils.readVInt(in);
+        return inflate(readBytes(in), length);
+    }
+
+    /**
+     * @return the deflated bytes or null if they're no smaller than
+     *         <code>value</code>
+     */
+    private static byte[] deflate(byte[] value) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(value);
+            deflater.finish();
+            byte[] buffer = new byte[value.length];
+            int length = deflater.deflate(buffer);
+
+            if (!deflater.finished()) {
+                return null;
+            }
+
+            byte[] deflated = new byte[length];
+            System.arraycopy(buffer, 0, deflated, 0, length);
+            return deflated;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] deflated, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] value = new byte[length];
+            int read = inflater.inflate(value);
+
+            if (read != length || !inflater.finished()) {
+                throw new IOException("Corrupt compressed value, expected " + length + " bytes, got " + read);
+            }
+
+            return value;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(RiakObjectWritable o) {
+        int cmp = bucket.compareTo(o.bucket);
+        return cmp != 0 ? cmp : key.compareTo(o.key);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + bucket.hashCode();
+        result = prime * result + key.hashCode();
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (!(obj instanceof RiakObjectWritable)) {
+            return false;
+        }
+        RiakObjectWritable other = (RiakObjectWritable) obj;
+        return bucket.equals(other.bucket) && key.equals(other.key);
+    }
+
+    /**
+     * Raw comparator that orders serialized objects by bucket then key
+     */
+    public static class Comparator extends BucketKeyWritable.Comparator {
+
+        public Comparator() {
+            super(RiakObjectWritable.class);
+        }
+
+        /**
+         * @param type
+         *            the {@link WritableComparable} being compared
+         */
+        protected Comparator(Class<? extends WritableComparable<?>> type) {
+            super(type);
+        }
+    }
+}
@@ -15,12 +15,23 @@ package com.basho.riak.hadoop;
 
 import java.io.IOException;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus.State;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
+import com.basho.riak.hadoop.config.RiakConfig;
+
 /**
- * A NO-OP output committer
+ * Riak writes can't be rolled back, so tasks have nothing to commit, except
+ * their completed split if the job keeps a {@link CompletionLedger}. At the
+ * end of a successful run of an incremental job the committer advances the
+ * job's {@link Watermark}, and it deletes the job's ledger. Whether the job
+ * commits or aborts, the committer deletes the job's directory under the
+ * working directory, which holds its {@link InputLimit} counts and
+ * {@link Checkpoint}s.
  * 
  * @author russell
  *
@@ -30,18 +41,26 @@ public class RiakOutputCommitter extends OutputCommitter {
     /* (non-Javadoc)
      * @see org.apache.hadoop.mapreduce.OutputCommitter#abortTask(org.apache.hadoop.mapreduce.TaskAttemptContext)
      */
-    @Override public void abortTask(TaskAttemptContext tac) throws IOException {}
+    @Override public void abortTask(TaskAttemptContext tac) throws IOException {
+        if (CompletionLedger.isEnabled(tac.getConfiguration())) {
+            CompletionLedger.abortTask(tac);
+        }
+    }
 
     /* (non-Javadoc)
      * @see org.apache.hadoop.mapreduce.OutputCommitter#commitTask(org.apache.hadoop.mapreduce.TaskAttemptContext)
      */
-    @Override public void commitTask(TaskAttemptContext tac) throws IOException {}
+    @Override public void commitTask(TaskAttemptContext tac) throws IOException {
+        if (CompletionLedger.isEnabled(tac.getConfiguration())) {
+            CompletionLedger.commitTask(tac);
+        }
+    }
 
     /* (non-Javadoc)
      * @see org.apache.hadoop.mapreduce.OutputCommitter#needsTaskCommit(org.apache.hadoop.mapreduce.TaskAttemptContext)
      */
     @Override public boolean needsTaskCommit(TaskAttemptContext tac) throws IOException {
-        return false;
+        return CompletionLedger.isEnabled(tac.getConfiguration()) && CompletionLedger.hasPending(tac);
     }
 
     /* (non-Javadoc)
@@ -49,6 +68,36 @@ public class RiakOutputCommitter extends OutputCommitter {
      */
     @Override public void setupJob(JobContext jc) throws IOException {}
 
+    /* (non-Javadoc)
+     * @see org.apache.hadoop.mapreduce.OutputCommitter#commitJob(org.apache.hadoop.mapreduce.JobContext)
+     */
+    @Override public void commitJob(JobContext jc) throws IOException {
+        if (RiakConfig.getIncrementalName(jc.getConfiguration()) != null) {
+            Watermark.commit(jc);
+        }
+        if (CompletionLedger.isEnabled(jc.getConfiguration())) {
+            CompletionLedger.commitJob(jc);
+        }
+        deleteJobDirectory(jc);
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.hadoop.mapreduce.OutputCommitter#abortJob(org.apache.hadoop.mapreduce.JobContext,
+     *      org.apache.hadoop.mapreduce.JobStatus.State)
+     */
+    @Override public void abortJob(JobContext jc, State state) throws IOException {
+        if (RiakConfig.getIncrementalName(jc.getConfiguration()) != null) {
+            Watermark.abort(jc);
+        }
+        deleteJobDirectory(jc);
+    }
+
+    private static void deleteJobDirectory(JobContext jc) throws IOException {
+        final Configuration conf = jc.getConfiguration();
+        final Path dir = RiakConfig.getJobDirectory(conf, jc.getJobID().toString());
+        dir.getFileSystem(conf).delete(dir, true);
+    }
+
     /* (non-Javadoc)
      * @see org.apache.hadoop.mapreduce.OutputCommitter#setupTask(org.apache.hadoop.mapreduce.TaskAttemptContext)
      */
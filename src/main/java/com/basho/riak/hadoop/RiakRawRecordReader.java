@@ -0,0 +1,42 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+
+/**
+ * Reads each object as a {@link RiakRawValue}. The same {@link RiakRawValue}
+ * instance is returned for every record, its buffers are reused, so a mapper
+ * that needs to keep a value past the next call to {@link #nextKeyValue()}
+ * must copy it.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakRawRecordReader extends AbstractRiakRecordReader<RiakRawValue> {
+
+    private final RiakRawValue value = new RiakRawValue();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#read(com.basho.riak.hadoop
+     * .BucketKey)
+     */
+    @Override protected RiakRawValue read(BucketKey key) throws IOException, InterruptedException {
+        value.set(getFetcher().fetch(key));
+        return value;
+    }
+}
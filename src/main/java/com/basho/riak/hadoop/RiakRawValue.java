@@ -0,0 +1,137 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.raw.RiakResponse;
+
+/**
+ * The value bytes of each sibling of a Riak object plus its
+ * {@link RiakMetadata}. Instances are meant to be reused: {@link #set(RiakResponse)}
+ * and {@link #readFields(DataInput)} recycle the buffers of the previous
+ * value, like hadoop's own {@link Writable}s.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakRawValue implements Writable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final RiakMetadata metadata = new RiakMetadata();
+    private final List<BytesWritable> values = new ArrayList<BytesWritable>(1);
+    private int numberOfValues;
+
+    /**
+     * Replace this instance's contents with the values and metadata of
+     * <code>response</code>
+     * 
+     * @param response
+     *            a response from a fetch
+     */
+    public void set(RiakResponse response) {
+        metadata.set(response);
+        numberOfValues = 0;
+
+        for (IRiakObject o : response) {
+            byte[] bytes = o.getValue();
+            if (bytes == null) {
+                bytes = EMPTY;
+            }
+            value(numberOfValues++).set(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * @return the metadata
+     */
+    public RiakMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the number of siblings
+     */
+    public int numberOfValues() {
+        return numberOfValues;
+    }
+
+    /**
+     * @return the value of the first sibling, or null if the object was not
+     *         found. Only the first {@link BytesWritable#getLength()} bytes of
+     *         the buffer are the value.
+     */
+    public BytesWritable getValue() {
+        return numberOfValues == 0 ? null : values.get(0);
+    }
+
+    /**
+     * @param i
+     *            the index of the sibling
+     * @return the value of the i'th sibling. Only the first
+     *         {@link BytesWritable#getLength()} bytes of the buffer are the
+     *         value.
+     */
+    public BytesWritable getValue(int i) {
+        if (i < 0 || i >= numberOfValues) {
+            throw new IndexOutOfBoundsException("No sibling " + i + ", there are " + numberOfValues);
+        }
+        return values.get(i);
+    }
+
+    private BytesWritable value(int i) {
+        if (i == values.size()) {
+            values.add(new BytesWritable());
+        }
+        return values.get(i);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+     */
+    public void write(DataOutput out) throws IOException {
+        metadata.write(out);
+        WritableUtils.writeVInt(out, numberOfValues);
+
+        for (int i = 0; i < numberOfValues; i++) {
+            values.get(i).write(out);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+     */
+    public void readFields(DataInput in) throws IOException {
+        metadata.readFields(in);
+        numberOfValues = WritableUtils.readVInt(in);
+
+        for (int i = 0; i < numberOfValues; i++) {
+            value(i).readFields(in);
+        }
+    }
+}
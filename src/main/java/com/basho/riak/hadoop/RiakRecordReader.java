@@ -13,91 +13,77 @@
  */
 package com.basho.riak.hadoop;
 
-import static com.basho.riak.hadoop.config.ClientFactory.getRawClient;
-
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.hadoop.mapreduce.InputSplit;
-import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import com.basho.riak.client.raw.RawClient;
 import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakLocation;
 
 /**
- * Wrapper around a {@link RawClient} for reading values from Riak
+ * Wrapper around a {@link RawClient} for reading values from Riak. Uses a
+ * {@link RiakFetcher} to read each value from the split's candidate
+ * {@link RiakLocation}s.
+ * 
+ * If the job has a {@link RiakObjectCache} each key is first read with a HEAD
+ * request, and the cached copy is used if its vclock still matches.
  * 
  * @author russell
  * 
  */
-public class RiakRecordReader extends RecordReader<BucketKey, RiakResponse> {
+public class RiakRecordReader extends AbstractRiakRecordReader<RiakResponse> {
 
-    private RawClient client;
-    private ConcurrentLinkedQueue<BucketKey> keys;
-    private long initialSize;
-
-    /*
-     * (non-Javadoc)
-     * 
-     * @see org.apache.hadoop.mapreduce.RecordReader#close()
-     */
-    @Override public void close() throws IOException {}
+    private RiakObjectCache cache;
 
     /*
      * (non-Javadoc)
      * 
-     * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentKey()
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#initialize(org.apache.
+     * hadoop.mapreduce.InputSplit,
+     * org.apache.hadoop.mapreduce.TaskAttemptContext)
      */
-    @Override public BucketKey getCurrentKey() throws IOException, InterruptedException {
-        return keys.peek();
+    @Override public void initialize(InputSplit split, TaskAttemptContext taskAttemptContext) throws IOException,
+            InterruptedException {
+        super.initialize(split, taskAttemptContext);
+        cache = RiakObjectCache.get(getConfiguration());
     }
 
     /*
      * (non-Javadoc)
      * 
-     * @see org.apache.hadoop.mapreduce.RecordReader#getCurrentValue()
+     * @see com.basho.riak.hadoop.AbstractRiakRecordReader#canPrefetch()
      */
-    @Override public RiakResponse getCurrentValue() throws IOException, InterruptedException {
-        BucketKey key = keys.poll();
-        return client.fetch(key.getBucket(), key.getKey());
+    @Override protected boolean canPrefetch() {
+        return true;
     }
 
     /*
      * (non-Javadoc)
      * 
-     * @see org.apache.hadoop.mapreduce.RecordReader#getProgress()
+     * @see
+     * com.basho.riak.hadoop.AbstractRiakRecordReader#read(com.basho.riak.hadoop
+     * .BucketKey)
      */
-    @Override public float getProgress() throws IOException, InterruptedException {
-        int size = keys.size();
-        if (size == 0) {
-            return 0;
-        } else {
-            return size / initialSize;
+    @Override protected RiakResponse read(BucketKey key) throws IOException, InterruptedException {
+        if (cache == null) {
+            return getFetcher().fetch(key);
         }
-    }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see
-     * org.apache.hadoop.mapreduce.RecordReader#initialize(org.apache.hadoop
-     * .mapreduce.InputSplit, org.apache.hadoop.mapreduce.TaskAttemptContext)
-     */
-    @Override public void initialize(InputSplit split, TaskAttemptContext taskAttemptContext) throws IOException,
-            InterruptedException {
-        RiakInputSplit inputSplit = (RiakInputSplit) split;
-        keys = new ConcurrentLinkedQueue<BucketKey>(inputSplit.getInputs());
-        initialSize = split.getLength();
-        client = getRawClient(inputSplit.getLocation());
-    }
+        final RiakResponse head = getFetcher().head(key);
+        if (head.numberOfValues() == 0 || head.getVclock() == null) {
+            return head;
+        }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see org.apache.hadoop.mapreduce.RecordReader#nextKeyValue()
-     */
-    @Override public boolean nextKeyValue() throws IOException, InterruptedException {
-        return keys.peek() != null;
+        final RiakResponse cached = cache.get(key, head.getVclock().getBytes());
+        if (cached != null) {
+            return cached;
+        }
+
+        final RiakResponse response = getFetcher().fetch(key);
+        cache.put(key, response);
+        return response;
     }
 }
@@ -21,13 +21,17 @@ import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import com.basho.riak.client.IRiakClient;
+import com.basho.riak.client.IRiakObject;
 import com.basho.riak.client.RiakException;
 import com.basho.riak.client.bucket.Bucket;
+import com.basho.riak.client.convert.PassThroughConverter;
 import com.basho.riak.hadoop.config.ClientFactory;
 import com.basho.riak.hadoop.config.RiakConfig;
 
 /**
- * Writes reducer results to Riak
+ * Writes reducer results to Riak. Values are converted to JSON, except
+ * {@link RiakObjectWritable}s and single valued {@link RiakResponseWritable}s
+ * which are stored as they are.
  * 
  * @author russell
  * @param <V>
@@ -36,11 +40,13 @@ import com.basho.riak.hadoop.config.RiakConfig;
 public class RiakRecordWriter<V> extends RecordWriter<Text, V> {
 
     private final Bucket bucket;
+    private final AdaptiveThrottle throttle;
 
     RiakRecordWriter(TaskAttemptContext tac) throws RiakException {
         Configuration conf = tac.getConfiguration();
         IRiakClient client = ClientFactory.clusterClient(RiakConfig.getRiakLocatons(conf));
         bucket = client.fetchBucket(RiakConfig.getOutputBucket(conf)).execute();
+        throttle = AdaptiveThrottle.forTask(tac);
     }
 
     /*
@@ -61,10 +67,29 @@ public class RiakRecordWriter<V> extends RecordWriter<Text, V> {
      * java.lang.Object)
      */
     @Override public void write(Text key, V value) throws IOException, InterruptedException {
+        throttle.acquire();
+        final long start = System.nanoTime();
         try {
-            bucket.store(key.toString(), value).execute();
+            if (value instanceof RiakObjectWritable) {
+                store(key.toString(), ((RiakObjectWritable) value).toRiakObject(bucket.getName(), key.toString()));
+            } else if (value instanceof RiakResponseWritable) {
+                RiakResponseWritable response = (RiakResponseWritable) value;
+                if (response.numberOfValues() != 1) {
+                    throw new IOException("Cannot store " + response.numberOfValues() + " values for " + key
+                                          + ", resolve them first");
+                }
+                store(key.toString(), response.getRiakObject(0, bucket.getName(), key.toString()));
+            } else {
+                bucket.store(key.toString(), value).execute();
+            }
+            throttle.success(System.nanoTime() - start);
         } catch (RiakException e) {
+            throttle.failure();
             throw new IOException(e);
         }
     }
+
+    private void store(String key, IRiakObject value) throws RiakException {
+        bucket.store(key, value).withConverter(new PassThroughConverter()).execute();
+    }
 }
@@ -0,0 +1,251 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.RiakMetadata.Sibling;
+
+/**
+ * The multi sibling version of {@link RiakObjectWritable}: a whole
+ * {@link RiakResponse}, for jobs that move objects to a reducer to merge their
+ * siblings. Serialized with the same bucket/key prefix, so it sorts with the
+ * same raw comparator.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakResponseWritable implements WritableComparable<RiakResponseWritable> {
+
+    static {
+        WritableComparator.define(RiakResponseWritable.class, new Comparator());
+    }
+
+    private final Text bucket = new Text();
+    private final Text key = new Text();
+    private byte[] vclock;
+    private final List<Sibling> metadata = new ArrayList<Sibling>(1);
+    private final List<byte[]> values = new ArrayList<byte[]>(1);
+    private boolean compressed;
+
+    public RiakResponseWritable() {}
+
+    /**
+     * @param bucketKey
+     *            the bucket/key <code>response</code> was fetched from
+     * @param response
+     *            the response to copy
+     */
+    public RiakResponseWritable(BucketKey bucketKey, RiakResponse response) {
+        set(bucketKey, response);
+    }
+
+    /**
+     * Replace this instance's contents with a copy of <code>response</code>
+     * 
+     * @param bucketKey
+     *            the bucket/key <code>response</code> was fetched from
+     * @param response
+     *            the response to copy
+     */
+    public void set(BucketKey bucketKey, RiakResponse response) {
+        bucket.set(bucketKey.getBucket());
+        key.set(bucketKey.getKey());
+        VClock vc = response.getVclock();
+        vclock = vc == null ? null : vc.getBytes();
+        metadata.clear();
+        values.clear();
+
+        for (IRiakObject o : response) {
+            Sibling sibling = new Sibling();
+            sibling.set(o);
+            metadata.add(sibling);
+            values.add(o.getValue() == null ? new byte[0] : o.getValue());
+        }
+    }
+
+    /**
+     * @param compressed
+     *            true to deflate the values when this object is written
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * @return the bucket
+     */
+    public String getBucket() {
+        return bucket.toString();
+    }
+
+    /**
+     * @return the key
+     */
+    public String getKey() {
+        return key.toString();
+    }
+
+    /**
+     * @return the vclock bytes, may be null
+     */
+    public byte[] getVClock() {
+        return vclock;
+    }
+
+    /**
+     * @return the number of siblings
+     */
+    public int numberOfValues() {
+        return values.size();
+    }
+
+    /**
+     * @param i
+     *            the index of the sibling
+     * @return the i'th sibling as an {@link IRiakObject}
+     */
+    public IRiakObject getRiakObject(int i) {
+        return getRiakObject(i, getBucket(), getKey());
+    }
+
+    /**
+     * @param i
+     *            the index of the sibling
+     * @param bucket
+     *            the bucket for the new object
+     * @param key
+     *            the key for the new object
+     * @return an {@link IRiakObject} with the i'th sibling's value and
+     *         metadata
+     */
+    public IRiakObject getRiakObject(int i, String bucket, String key) {
+        return RiakObjectWritable.toRiakObject(bucket, key, vclock, metadata.get(i), values.get(i));
+    }
+
+    /**
+     * @return a {@link RiakResponse} with all the siblings
+     */
+    public RiakResponse toRiakResponse() {
+        final IRiakObject[] objects = new IRiakObject[values.size()];
+
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = getRiakObject(i);
+        }
+
+        return new RiakResponse(vclock, objects);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+     */
+    public void write(DataOutput out) throws IOException {
+        bucket.write(out);
+        key.write(out);
+        RiakObjectWritable.writeBytes(out, vclock);
+        WritableUtils.writeVInt(out, values.size());
+
+        for (int i = 0; i < values.size(); i++) {
+            metadata.get(i).write(out);
+            RiakObjectWritable.writeValue(out, values.get(i), compressed);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+     */
+    public void readFields(DataInput in) throws IOException {
+        bucket.readFields(in);
+        key.readFields(in);
+        vclock = RiakObjectWritable.readBytes(in);
+        metadata.clear();
+        values.clear();
+
+        int numberOfValues = WritableUtils.readVInt(in);
+        for (int i = 0; i < numberOfValues; i++) {
+            Sibling sibling = new Sibling();
+            sibling.readFields(in);
+            metadata.add(sibling);
+            values.add(RiakObjectWritable.readValue(in));
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(RiakResponseWritable o) {
+        int cmp = bucket.compareTo(o.bucket);
+        return cmp != 0 ? cmp : key.compareTo(o.key);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + bucket.hashCode();
+        result = prime * result + key.hashCode();
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (!(obj instanceof RiakResponseWritable)) {
+            return false;
+        }
+        RiakResponseWritable other = (RiakResponseWritable) obj;
+        return bucket.equals(other.bucket) && key.equals(other.key);
+    }
+
+    /**
+     * Raw comparator that orders serialized responses by bucket then key
+     */
+    public static class Comparator extends RiakObjectWritable.Comparator {
+
+        public Comparator() {
+            super(RiakResponseWritable.class);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.hash.Hash;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.raw.RawClient;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.cap.LastModifiedResolver;
+import com.basho.riak.hadoop.config.ClientFactory;
+import com.basho.riak.hadoop.config.NoRiakLocationsException;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+
+/**
+ * An immutable, memory mapped copy of a small Riak bucket, for map side joins
+ * against dimension data without any per task requests to Riak.
+ * 
+ * At job set up {@link #create(Configuration, String, Path)} reads the whole
+ * bucket once, writes it to a file and adds that to the
+ * {@link DistributedCache}. Each task then calls
+ * {@link #open(Configuration, String)}, which maps the local copy. The file is
+ * an open addressing hash table of (hash, offset) slots followed by the
+ * entries, so a lookup is a few reads from the mapped file and no objects are
+ * held on the heap per entry. Objects with siblings are stored as their most
+ * recently modified sibling, and objects without a value as an empty value.
+ * 
+ * A snapshot must be smaller than 2GB.
+ * 
+ * @author russell
+ * 
+ */
+public class RiakSnapshot {
+
+    private static final int MAGIC = 0x52534e50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 12;
+    private static final long EMPTY = -1;
+    private static final Hash HASH = Hash.getInstance(Hash.MURMUR_HASH);
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int mask;
+
+    private RiakSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+        this.mask = buffer.getInt(12) - 1;
+    }
+
+    /**
+     * Snapshot <code>bucket</code> to <code>path</code>, and add it to the
+     * {@link DistributedCache} of the job with <code>conf</code>
+     * 
+     * @param conf
+     *            the job {@link Configuration}, for the Riak locations
+     * @param bucket
+     *            the bucket to snapshot
+     * @param path
+     *            where to write the snapshot
+     * @return the fully qualified path of the snapshot
+     * @throws IOException
+     */
+    public static Path create(Configuration conf, String bucket, Path path) throws IOException {
+        final RiakLocation[] locations = RiakConfig.getRiakLocatons(conf);
+
+        if (locations.length == 0) {
+            throw new NoRiakLocationsException();
+        }
+
+        final RawClient client = ClientFactory.getRawClient(locations[0]);
+        final LastModifiedResolver resolver = new LastModifiedResolver();
+        final File temp = File.createTempFile("riak-snapshot", ".data");
+
+        try {
+            final Writer writer = new Writer(temp);
+            try {
+                for (String key : client.listKeys(bucket)) {
+                    RiakResponse response = client.fetch(bucket, key);
+                    if (response.numberOfValues() > 0) {
+                        IRiakObject o = resolver.resolve(Arrays.asList(response.getRiakObjects()));
+                        writer.add(new BucketKey(bucket, key), o.getValue());
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+
+            final FileSystem fs = path.getFileSystem(conf);
+            final FSDataOutputStream out = fs.create(path, true);
+            try {
+                writer.writeTo(out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            temp.delete();
+            // this runs in the job client, which may live on long after
+            client.shutdown();
+        }
+
+        final Path qualified = path.getFileSystem(conf).makeQualified(path);
+        DistributedCache.addCacheFile(qualified.toUri(), conf);
+        RiakConfig.setSnapshotPath(conf, bucket, qualified);
+        return qualified;
+    }
+
+    /**
+     * Map the local copy of the snapshot of <code>bucket</code> made by
+     * {@link #create(Configuration, String, Path)}
+     * 
+     * @param conf
+     *            the task {@link Configuration}
+     * @param bucket
+     *            the bucket
+     * @return the snapshot
+     * @throws IOException
+     *             if there is no snapshot of <code>bucket</code> in the
+     *             {@link DistributedCache}
+     */
+    public static RiakSnapshot open(Configuration conf, String bucket) throws IOException {
+        final Path snapshot = RiakConfig.getSnapshotPath(conf, bucket);
+        final Path[] localFiles = DistributedCache.getLocalCacheFiles(conf);
+
+        if (snapshot != null && localFiles != null) {
+            for (Path local : localFiles) {
+                if (snapshot.getName().equals(local.getName())) {
+                    return open(new File(local.toUri().getPath()));
+                }
+            }
+        }
+
+        throw new IOException("No snapshot of " + bucket + " in the distributed cache");
+    }
+
+    /**
+     * Map a snapshot file
+     * 
+     * @param file
+     *            a local snapshot file
+     * @return the snapshot
+     * @throws IOException
+     */
+    public static RiakSnapshot open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            final FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is larger than 2GB");
+            }
+            // the mapping stays valid after the channel is closed
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(file, buffer);
+            return new RiakSnapshot(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Check <code>buffer</code> holds a snapshot this version can read, and
+     * that its hash table fits in it, so a lookup can't run off the end
+     */
+    private static void checkHeader(File file, ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a snapshot file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Snapshot " + file + " is version " + buffer.getInt(4) + ", expected "
+                                  + VERSION);
+        }
+
+        final int count = buffer.getInt(8);
+        final int slots = buffer.getInt(12);
+        if (slots < 2 || (slots & (slots - 1)) != 0 || count < 0 || count >= slots
+            || HEADER_SIZE + ((long) slots * SLOT_SIZE) > buffer.capacity()) {
+            throw new IOException("Snapshot " + file + " is corrupt");
+        }
+    }
+
+    /**
+     * @return the number of objects in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key
+     *            the {@link BucketKey} to look up
+     * @return true if <code>key</code> is in the snapshot
+     */
+    public boolean contains(BucketKey key) {
+        return find(key) != EMPTY;
+    }
+
+    /**
+     * @param key
+     *            the {@link BucketKey} to look up
+     * @return a copy of the value of <code>key</code>, or null if it isn't in
+     *         the snapshot
+     */
+    public byte[] get(BucketKey key) {
+        final long offset = find(key);
+
+        if (offset == EMPTY) {
+            return null;
+        }
+
+        final int entry = (int) offset;
+        final int bucketLength = buffer.getInt(entry);
+        final int keyLength = buffer.getInt(entry + 4);
+        final byte[] value = new byte[buffer.getInt(entry + 8)];
+        final ByteBuffer b = buffer.duplicate();
+        b.position(entry + 12 + bucketLength + keyLength);
+        b.get(value);
+        return value;
+    }
+
+    /**
+     * @return the offset of the entry for <code>key</code>, or
+     *         {@link #EMPTY} if there isn't one
+     */
+    private long find(BucketKey key) {
+        final byte[] bucket = key.getBucketBytes();
+        final byte[] k = key.getKeyBytes();
+        final int hash = hash(bucket, k);
+        int slot = hash & mask;
+
+        while (true) {
+            final int position = HEADER_SIZE + (slot * SLOT_SIZE);
+            final long offset = buffer.getLong(position + 4);
+
+            if (offset == EMPTY) {
+                return EMPTY;
+            }
+            if (buffer.getInt(position) == hash && matches((int) offset, bucket, k)) {
+                return offset;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean matches(int entry, byte[] bucket, byte[] key) {
+        if (buffer.getInt(entry) != bucket.length || buffer.getInt(entry + 4) != key.length) {
+            return false;
+        }
+
+        int position = entry + 12;
+        for (int i = 0; i < bucket.length; i++) {
+            if (buffer.get(position++) != bucket[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(position++) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bucket, byte[] key) {
+        return HASH.hash(key, key.length, HASH.hash(bucket, bucket.length, 0));
+    }
+
+    /**
+     * Builds a snapshot file. Entries are spooled to a local file as they are
+     * added, and only their hashes and offsets are kept in memory.
+     */
+    static class Writer {
+
+        private final File data;
+        private final DataOutputStream out;
+        private int[] hashes = new int[1024];
+        private long[] offsets = new long[1024];
+        private int count = 0;
+        private long length = 0;
+
+        /**
+         * @param data
+         *            a local file for the entries
+         * @throws IOException
+         */
+        Writer(File data) throws IOException {
+            this.data = data;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(data)));
+        }
+
+        /**
+         * Add an entry, keys must be unique. A null value is stored as empty.
+         */
+        void add(BucketKey key, byte[] value) throws IOException {
+            final byte[] bucket = key.getBucketBytes();
+            final byte[] k = key.getKeyBytes();
+            final byte[] v = value == null ? new byte[0] : value;
+
+            if (count == hashes.length) {
+                int[] newHashes = new int[count * 2];
+                long[] newOffsets = new long[count * 2];
+                System.arraycopy(hashes, 0, newHashes, 0, count);
+                System.arraycopy(offsets, 0, newOffsets, 0, count);
+                hashes = newHashes;
+                offsets = newOffsets;
+            }
+
+            hashes[count] = hash(bucket, k);
+            offsets[count] = length;
+            count++;
+
+            out.writeInt(bucket.length);
+            out.writeInt(k.length);
+            out.writeInt(v.length);
+            out.write(bucket);
+            out.write(k);
+            out.write(v);
+            length += 12 + bucket.length + k.length + v.length;
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+
+        /**
+         * Write the header, the hash table and the spooled entries to
+         * <code>dest</code>. Call after {@link #close()}.
+         */
+        void writeTo(OutputStream dest) throws IOException {
+            int slots = 2;
+            while (slots < count * 2) {
+                slots <<= 1;
+            }
+
+            final long dataStart = HEADER_SIZE + ((long) slots * SLOT_SIZE);
+            if (dataStart + length > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot would be larger than 2GB");
+            }
+
+            final int[] slotHashes = new int[slots];
+            final long[] slotOffsets = new long[slots];
+            Arrays.fill(slotOffsets, EMPTY);
+
+            for (int i = 0; i < count; i++) {
+                int slot = hashes[i] & (slots - 1);
+                while (slotOffsets[slot] != EMPTY) {
+                    slot = (slot + 1) & (slots - 1);
+                }
+                slotHashes[slot] = hashes[i];
+                slotOffsets[slot] = dataStart + offsets[i];
+            }
+
+            final DataOutputStream header = new DataOutputStream(new BufferedOutputStream(dest));
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(count);
+            header.writeInt(slots);
+            for (int i = 0; i < slots; i++) {
+                header.writeInt(slotHashes[i]);
+                header.writeLong(slotOffsets[i]);
+            }
+
+            final InputStream in = new BufferedInputStream(new FileInputStream(data));
+            try {
+                final byte[] buf = new byte[8192];
+                int read;
+                while ((read = in.read(buf)) != -1) {
+                    header.write(buf, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            header.flush();
+        }
+    }
+}
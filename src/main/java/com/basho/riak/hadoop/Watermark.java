@@ -0,0 +1,159 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * The persisted high watermark of an incremental job: the time up to which
+ * it has processed every modified object.
+ * 
+ * When splits are planned, the job's start time is written to a pending file
+ * for the run, and the run only reads objects modified since the committed
+ * watermark. When the run succeeds {@link RiakOutputCommitter} calls
+ * {@link #commit(JobContext)}, which renames the pending file to become the
+ * new watermark, so a failed run leaves the watermark where it was. Objects
+ * modified while a run is in progress may be processed by that run and the
+ * next one, but never by neither.
+ * 
+ * Jobs that don't write to Riak should call {@link #commit(JobContext)} from
+ * their own {@link org.apache.hadoop.mapreduce.OutputCommitter}.
+ * 
+ * @author russell
+ * 
+ */
+public final class Watermark {
+
+    private static final String WATERMARK_PREFIX = "watermark-";
+    private static final String PENDING_PREFIX = "pending-";
+
+    private Watermark() {}
+
+    /**
+     * @param conf
+     *            the job {@link Configuration}
+     * @return the directory holding the watermarks of the job's incremental
+     *         name
+     */
+    static Path getDirectory(Configuration conf) {
+        return new Path(new Path(RiakConfig.getWorkingDirectory(conf), "watermarks"),
+                        RiakConfig.getIncrementalName(conf));
+    }
+
+    /**
+     * @param conf
+     *            the job {@link Configuration}
+     * @return the committed watermark in milliseconds since the epoch, 0 if
+     *         the job hasn't committed one yet
+     * @throws IOException
+     */
+    public static long get(Configuration conf) throws IOException {
+        final Path dir = getDirectory(conf);
+        final FileStatus[] files = dir.getFileSystem(conf).listStatus(dir);
+        long watermark = 0;
+
+        if (files != null) {
+            for (FileStatus file : files) {
+                String name = file.getPath().getName();
+                if (name.startsWith(WATERMARK_PREFIX)) {
+                    watermark = Math.max(watermark, Long.parseLong(name.substring(WATERMARK_PREFIX.length())));
+                }
+            }
+        }
+
+        return watermark;
+    }
+
+    /**
+     * Record the watermark the running job will commit if it succeeds
+     * 
+     * @param context
+     *            the job's context
+     * @param watermark
+     *            the start time of the job
+     * @throws IOException
+     */
+    public static void begin(JobContext context, long watermark) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final Path pending = new Path(getDirectory(conf), PENDING_PREFIX + context.getJobID());
+        final FSDataOutputStream out = pending.getFileSystem(conf).create(pending, true);
+        try {
+            out.writeLong(watermark);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Make the running job's pending watermark the committed one, and remove
+     * older watermarks
+     * 
+     * @param context
+     *            the job's context
+     * @throws IOException
+     */
+    public static void commit(JobContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final Path dir = getDirectory(conf);
+        final FileSystem fs = dir.getFileSystem(conf);
+        final Path pending = new Path(dir, PENDING_PREFIX + context.getJobID());
+
+        if (!fs.exists(pending)) {
+            return;
+        }
+
+        final long watermark;
+        final FSDataInputStream in = fs.open(pending);
+        try {
+            watermark = in.readLong();
+        } finally {
+            in.close();
+        }
+
+        if (!fs.rename(pending, new Path(dir, WATERMARK_PREFIX + watermark))) {
+            throw new IOException("Could not commit watermark " + watermark + " in " + dir);
+        }
+
+        for (FileStatus file : fs.listStatus(dir)) {
+            String name = file.getPath().getName();
+            if (name.startsWith(WATERMARK_PREFIX)
+                && Long.parseLong(name.substring(WATERMARK_PREFIX.length())) < watermark) {
+                fs.delete(file.getPath(), false);
+            }
+        }
+    }
+
+    /**
+     * Drop the running job's pending watermark
+     * 
+     * @param context
+     *            the job's context
+     * @throws IOException
+     */
+    public static void abort(JobContext context) throws IOException {
+        final Configuration conf = context.getConfiguration();
+        final Path pending = new Path(getDirectory(conf), PENDING_PREFIX + context.getJobID());
+        pending.getFileSystem(conf).delete(pending, false);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.cap;
+
+import java.util.Collection;
+import java.util.Date;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.cap.ConflictResolver;
+
+/**
+ * Resolves siblings on their metadata, before any are converted: the most
+ * recently modified sibling wins. Siblings with no last modified date lose to
+ * any that have one.
+ * 
+ * @author russell
+ * 
+ */
+public class LastModifiedResolver implements ConflictResolver<IRiakObject> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.client.cap.ConflictResolver#resolve(java.util.Collection)
+     */
+    public IRiakObject resolve(Collection<IRiakObject> siblings) {
+        IRiakObject latest = null;
+        Date latestModified = null;
+
+        for (IRiakObject sibling : siblings) {
+            Date lastModified = sibling.getLastModified();
+
+            if (latest == null
+                || (lastModified != null && (latestModified == null || lastModified.after(latestModified)))) {
+                latest = sibling;
+                latestModified = lastModified;
+            }
+        }
+
+        return latest;
+    }
+}
@@ -19,8 +19,17 @@ import java.util.List;
 import java.util.StringTokenizer;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
 
+import com.basho.riak.client.query.functions.Function;
+import com.basho.riak.client.query.functions.JSSourceFunction;
+import com.basho.riak.client.query.functions.NamedErlangFunction;
+import com.basho.riak.client.query.functions.NamedJSFunction;
+import com.basho.riak.client.raw.FetchMeta;
+import com.basho.riak.hadoop.LinkWalkStep;
+import com.basho.riak.hadoop.MapReducePhase;
 import com.basho.riak.hadoop.keylisters.BucketKeyLister;
 import com.basho.riak.hadoop.keylisters.KeyLister;
 
@@ -39,6 +48,41 @@ public final class RiakConfig {
     private static final String KEY_LISTER_CLASS_PROPERTY = "com.basho.riak.hadoop.mr.keylister.class";
     private static final String KEY_LISTER_INIT_STRING_PROPERTY = "com.basho.riak.hadoop.mr.keylister.init_string";
     private static final String OUTPUT_BUCKET_PROPERTY = "com.basho.riak.hadoop.mr.output.bucket";
+    private static final String FETCH_TIMEOUT_PROPERTY = "com.basho.riak.hadoop.mr.fetch.timeout";
+    private static final String FETCH_ATTEMPTS_PROPERTY = "com.basho.riak.hadoop.mr.fetch.attempts";
+    private static final String HEDGE_PERCENTILE_PROPERTY = "com.basho.riak.hadoop.mr.fetch.hedge.percentile";
+    private static final String OPS_BUDGET_PROPERTY = "com.basho.riak.hadoop.mr.throttle.ops_per_second";
+    private static final String LATENCY_TARGET_PROPERTY = "com.basho.riak.hadoop.mr.throttle.latency_target";
+    private static final String INPUT_R_PROPERTY = "com.basho.riak.hadoop.mr.input.r";
+    private static final String INPUT_PR_PROPERTY = "com.basho.riak.hadoop.mr.input.pr";
+    private static final String INPUT_NOTFOUND_OK_PROPERTY = "com.basho.riak.hadoop.mr.input.notfound_ok";
+    private static final String INPUT_BASIC_QUORUM_PROPERTY = "com.basho.riak.hadoop.mr.input.basic_quorum";
+    private static final String FETCH_CONCURRENCY_PROPERTY = "com.basho.riak.hadoop.mr.fetch.concurrency";
+    private static final String MAPPER_THREADS_PROPERTY = "com.basho.riak.hadoop.mr.mapper.threads";
+    private static final String THREADED_MAPPER_CLASS_PROPERTY = "com.basho.riak.hadoop.mr.mapper.class";
+    private static final String MAPPER_BATCH_SIZE_PROPERTY = "com.basho.riak.hadoop.mr.mapper.batch_size";
+    private static final String INPUT_PHASES_PROPERTY = "com.basho.riak.hadoop.mr.input.phases";
+    private static final String INPUT_PHASES_BATCH_SIZE_PROPERTY = "com.basho.riak.hadoop.mr.input.phases.batch_size";
+    private static final String LINK_WALK_STEPS_PROPERTY = "com.basho.riak.hadoop.mr.input.link_walk";
+    private static final String LINK_WALK_CONCURRENCY_PROPERTY = "com.basho.riak.hadoop.mr.input.link_walk.concurrency";
+    private static final String LOOKUP_CACHE_SIZE_PROPERTY = "com.basho.riak.hadoop.mr.lookup.cache_size";
+    private static final String LOOKUP_CACHE_NOTFOUND_PROPERTY = "com.basho.riak.hadoop.mr.lookup.cache_notfound";
+    private static final String LOOKUP_CONCURRENCY_PROPERTY = "com.basho.riak.hadoop.mr.lookup.concurrency";
+    private static final String SNAPSHOT_PATH_PROPERTY = "com.basho.riak.hadoop.mr.snapshot.";
+    private static final String KEY_FILTER_PATH_PROPERTY = "com.basho.riak.hadoop.mr.input.key_filter";
+    private static final String SAMPLE_FRACTION_PROPERTY = "com.basho.riak.hadoop.mr.input.sample.fraction";
+    private static final String SAMPLE_SIZE_PROPERTY = "com.basho.riak.hadoop.mr.input.sample.size";
+    private static final String SAMPLE_SEED_PROPERTY = "com.basho.riak.hadoop.mr.input.sample.seed";
+    private static final String WORKING_DIRECTORY_PROPERTY = "com.basho.riak.hadoop.mr.working.dir";
+    private static final String INPUT_LIMIT_PROPERTY = "com.basho.riak.hadoop.mr.input.limit";
+    private static final String OBJECT_CACHE_DIRECTORY_PROPERTY = "com.basho.riak.hadoop.mr.object_cache.dir";
+    private static final String OBJECT_CACHE_SIZE_PROPERTY = "com.basho.riak.hadoop.mr.object_cache.size";
+    private static final String INCREMENTAL_NAME_PROPERTY = "com.basho.riak.hadoop.mr.incremental.name";
+    private static final String LAST_MODIFIED_BUCKET_PROPERTY = "com.basho.riak.hadoop.mr.incremental.bucket";
+    private static final String LAST_MODIFIED_INDEX_PROPERTY = "com.basho.riak.hadoop.mr.incremental.index";
+    private static final String CHECKPOINT_INTERVAL_PROPERTY = "com.basho.riak.hadoop.mr.checkpoint.interval";
+    private static final String LEDGER_PROPERTY = "com.basho.riak.hadoop.mr.ledger";
+    private static final String RESUME_PROPERTY = "com.basho.riak.hadoop.mr.ledger.resume";
 
     private RiakConfig() {}
 
@@ -184,4 +228,1008 @@ public final class RiakConfig {
         conf.set(OUTPUT_BUCKET_PROPERTY, bucket);
         return conf;
     }
+
+    /**
+     * Set a timeout for each fetch the record reader makes. A fetch that times
+     * out counts as a failure for the location and is retried elsewhere.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param timeoutMillis
+     *            the timeout in milliseconds, 0 for no timeout
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setFetchTimeout(Configuration conf, int timeoutMillis) {
+        conf.setInt(FETCH_TIMEOUT_PROPERTY, timeoutMillis);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the fetch timeout in milliseconds, 0 (the default) for none
+     */
+    public static int getFetchTimeout(Configuration conf) {
+        return conf.getInt(FETCH_TIMEOUT_PROPERTY, 0);
+    }
+
+    /**
+     * Set how many times the record reader tries to fetch a key before failing
+     * the task.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param attempts
+     *            the maximum number of attempts
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setFetchAttempts(Configuration conf, int attempts) {
+        conf.setInt(FETCH_ATTEMPTS_PROPERTY, attempts);
+        return conf;
+    }
+
+    /**
+     * Get the configured number of fetch attempts
+     * 
+     * @param conf
+     *            the {@link Configuration} to query
+     * @param defaultValue
+     *            the number of attempts to use if it hasn't been set
+     * @return the maximum number of attempts or <code>defaultValue</code>
+     */
+    public static int getFetchAttempts(Configuration conf, int defaultValue) {
+        return conf.getInt(FETCH_ATTEMPTS_PROPERTY, defaultValue);
+    }
+
+    /**
+     * Turn on hedged reads. When a fetch has taken longer than
+     * <code>percentile</code> of recent fetches a duplicate request is sent to
+     * another location, and whichever answers first is used.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param percentile
+     *            the latency percentile to hedge at (e.g. 95), 0 to turn off
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setHedgePercentile(Configuration conf, float percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        conf.set(HEDGE_PERCENTILE_PROPERTY, Float.toString(percentile));
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the percentile to send hedged reads at, 0 (the default) if
+     *         hedging is off
+     */
+    public static float getHedgePercentile(Configuration conf) {
+        return conf.getFloat(HEDGE_PERCENTILE_PROPERTY, 0);
+    }
+
+    /**
+     * Limit the rate a job's tasks make requests to Riak. The budget is for
+     * the whole job, each task gets an equal share of it based on the hadoop
+     * cluster size and the slots for its type (map or reduce). The share
+     * covers all of the task's reads, writes and lookups.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param opsPerSecond
+     *            the total requests per second for the job, 0 for no limit
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setOpsPerSecondBudget(Configuration conf, int opsPerSecond) {
+        conf.setInt(OPS_BUDGET_PROPERTY, opsPerSecond);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the job's requests per second budget, 0 (the default) for none
+     */
+    public static int getOpsPerSecondBudget(Configuration conf) {
+        return conf.getInt(OPS_BUDGET_PROPERTY, 0);
+    }
+
+    /**
+     * Set the latency above which tasks take Riak to be overloaded and slow
+     * down their requests.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param millis
+     *            the latency target in milliseconds, 0 to only slow down on
+     *            errors
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setThrottleLatencyTarget(Configuration conf, int millis) {
+        conf.setInt(LATENCY_TARGET_PROPERTY, millis);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the latency target in milliseconds, 0 (the default) for none
+     */
+    public static int getThrottleLatencyTarget(Configuration conf) {
+        return conf.getInt(LATENCY_TARGET_PROPERTY, 0);
+    }
+
+    /**
+     * Set the read quorum for the record reader's fetches. Lowering it (e.g.
+     * r=1 for an analytics scan) cuts latency and coordinator work.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param r
+     *            the read quorum
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setInputR(Configuration conf, int r) {
+        conf.setInt(INPUT_R_PROPERTY, r);
+        return conf;
+    }
+
+    /**
+     * Set the primary read quorum for the record reader's fetches
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param pr
+     *            the primary read quorum
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setInputPR(Configuration conf, int pr) {
+        conf.setInt(INPUT_PR_PROPERTY, pr);
+        return conf;
+    }
+
+    /**
+     * Set whether a notfound counts towards the read quorum for the record
+     * reader's fetches
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param notFoundOK
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setInputNotFoundOK(Configuration conf, boolean notFoundOK) {
+        conf.setBoolean(INPUT_NOTFOUND_OK_PROPERTY, notFoundOK);
+        return conf;
+    }
+
+    /**
+     * Set whether the record reader's fetches return early once a simple
+     * majority of vnodes have answered notfound
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param basicQuorum
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setInputBasicQuorum(Configuration conf, boolean basicQuorum) {
+        conf.setBoolean(INPUT_BASIC_QUORUM_PROPERTY, basicQuorum);
+        return conf;
+    }
+
+    /**
+     * Get the fetch options for the record reader. Any option that hasn't been
+     * set uses the bucket/cluster default.
+     * 
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return a {@link FetchMeta} with the configured options, or null if none
+     *         have been set
+     */
+    public static FetchMeta getInputFetchMeta(Configuration conf) {
+        FetchMeta.Builder builder = new FetchMeta.Builder();
+        boolean configured = false;
+
+        if (conf.get(INPUT_R_PROPERTY) != null) {
+            builder.r(conf.getInt(INPUT_R_PROPERTY, 0));
+            configured = true;
+        }
+        if (conf.get(INPUT_PR_PROPERTY) != null) {
+            builder.pr(conf.getInt(INPUT_PR_PROPERTY, 0));
+            configured = true;
+        }
+        if (conf.get(INPUT_NOTFOUND_OK_PROPERTY) != null) {
+            builder.notFoundOK(conf.getBoolean(INPUT_NOTFOUND_OK_PROPERTY, false));
+            configured = true;
+        }
+        if (conf.get(INPUT_BASIC_QUORUM_PROPERTY) != null) {
+            builder.basicQuorum(conf.getBoolean(INPUT_BASIC_QUORUM_PROPERTY, false));
+            configured = true;
+        }
+
+        return configured ? builder.build() : null;
+    }
+
+    /**
+     * Set how many fetches the record reader keeps in flight. The reader
+     * fetches ahead of the mapper and still hands records over in split order.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param concurrency
+     *            the number of concurrent fetches, 1 for no read ahead
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setFetchConcurrency(Configuration conf, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        conf.setInt(FETCH_CONCURRENCY_PROPERTY, concurrency);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the number of concurrent fetches, 1 (the default) for no read
+     *         ahead
+     */
+    public static int getFetchConcurrency(Configuration conf) {
+        return conf.getInt(FETCH_CONCURRENCY_PROPERTY, 1);
+    }
+
+    /**
+     * Set the number of threads a
+     * {@link com.basho.riak.hadoop.MultithreadedRiakMapper} runs
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param threads
+     *            the number of mapper threads per task
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setMapperThreads(Configuration conf, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        conf.setInt(MAPPER_THREADS_PROPERTY, threads);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the number of threads per task for a
+     *         {@link com.basho.riak.hadoop.MultithreadedRiakMapper}, default 10
+     */
+    public static int getMapperThreads(Configuration conf) {
+        return conf.getInt(MAPPER_THREADS_PROPERTY, 10);
+    }
+
+    /**
+     * Set the {@link Mapper} that each thread of a
+     * {@link com.basho.riak.hadoop.MultithreadedRiakMapper} runs.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param mapperClass
+     *            a thread safe (or stateless) {@link Mapper}, one instance is
+     *            created per thread
+     * @return the updated {@link Configuration}
+     */
+    @SuppressWarnings("rawtypes") public static Configuration setThreadedMapperClass(Configuration conf,
+            Class<? extends Mapper> mapperClass) {
+        conf.setClass(THREADED_MAPPER_CLASS_PROPERTY, mapperClass, Mapper.class);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the {@link Mapper} class for each thread of a
+     *         {@link com.basho.riak.hadoop.MultithreadedRiakMapper}, or null if
+     *         it hasn't been set
+     */
+    @SuppressWarnings("rawtypes") public static Class<? extends Mapper> getThreadedMapperClass(Configuration conf) {
+        return conf.getClass(THREADED_MAPPER_CLASS_PROPERTY, null, Mapper.class);
+    }
+
+    /**
+     * Set how many records a {@link com.basho.riak.hadoop.RiakBatchMapper} gets
+     * in each batch
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param batchSize
+     *            the maximum records per batch
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setMapperBatchSize(Configuration conf, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        conf.setInt(MAPPER_BATCH_SIZE_PROPERTY, batchSize);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the maximum records per batch for a
+     *         {@link com.basho.riak.hadoop.RiakBatchMapper}, default 100
+     */
+    public static int getMapperBatchSize(Configuration conf) {
+        return conf.getInt(MAPPER_BATCH_SIZE_PROPERTY, 100);
+    }
+
+    /**
+     * Add a map phase for
+     * {@link com.basho.riak.hadoop.RiakMapReduceInputFormat} to run on each
+     * split's inputs. Phases run in the order they are added.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param function
+     *            a {@link JSSourceFunction}, {@link NamedJSFunction} or
+     *            {@link NamedErlangFunction}
+     * @param arg
+     *            the static argument for the function, may be null
+     * @return the updated {@link Configuration}
+     * @throws IOException
+     *             if the phase can't be serialized
+     */
+    public static Configuration addInputMapPhase(Configuration conf, Function function, Object arg)
+            throws IOException {
+        return addInputPhase(conf, new MapReducePhase(MapReducePhase.Type.MAP, function, arg));
+    }
+
+    /**
+     * Add a reduce phase for
+     * {@link com.basho.riak.hadoop.RiakMapReduceInputFormat} to run on each
+     * batch of a split's inputs, after the phases already added. Use it to
+     * pre-aggregate on the server (e.g.
+     * <code>riak_kv_mapreduce:reduce_sum</code>): the mapper then gets one
+     * partial aggregate per batch, rather than a record per object, and should
+     * combine them the way a combiner's output would be combined. Set
+     * {@link #setInputPhasesBatchSize(Configuration, int)} to at least the
+     * split size for one partial per split.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param function
+     *            a {@link JSSourceFunction}, {@link NamedJSFunction} or
+     *            {@link NamedErlangFunction}
+     * @param arg
+     *            the static argument for the function, may be null
+     * @return the updated {@link Configuration}
+     * @throws IOException
+     *             if the phase can't be serialized
+     */
+    public static Configuration addInputReducePhase(Configuration conf, Function function, Object arg)
+            throws IOException {
+        return addInputPhase(conf, new MapReducePhase(MapReducePhase.Type.REDUCE, function, arg));
+    }
+
+    private static Configuration addInputPhase(Configuration conf, MapReducePhase phase) throws IOException {
+        List<MapReducePhase> phases = getInputPhases(conf);
+        phases.add(phase);
+        conf.set(INPUT_PHASES_PROPERTY, MapReducePhase.toJSON(phases));
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the phases to run on each split's inputs (may be empty, never
+     *         null)
+     * @throws IOException
+     *             if the phases can't be deserialized
+     */
+    public static List<MapReducePhase> getInputPhases(Configuration conf) throws IOException {
+        String json = conf.get(INPUT_PHASES_PROPERTY);
+
+        if (json == null) {
+            return new ArrayList<MapReducePhase>();
+        }
+
+        return MapReducePhase.fromJSON(json);
+    }
+
+    /**
+     * Set how many keys {@link com.basho.riak.hadoop.RiakMapReduceInputFormat}
+     * sends to Riak in each map/reduce query
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param batchSize
+     *            the maximum keys per query
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setInputPhasesBatchSize(Configuration conf, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        conf.setInt(INPUT_PHASES_BATCH_SIZE_PROPERTY, batchSize);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the maximum keys per map/reduce query, default 1000
+     */
+    public static int getInputPhasesBatchSize(Configuration conf) {
+        return conf.getInt(INPUT_PHASES_BATCH_SIZE_PROPERTY, 1000);
+    }
+
+    /**
+     * Add a step to the link walk
+     * {@link com.basho.riak.hadoop.RiakLinkWalkInputFormat} does from each
+     * input. Steps are walked in the order they are added.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param bucket
+     *            the bucket to follow links to, null for any
+     * @param tag
+     *            the tag of links to follow, null for any
+     * @param keep
+     *            whether the mapper gets the objects this step reaches
+     * @return the updated {@link Configuration}
+     * @throws IOException
+     *             if the step can't be serialized
+     */
+    public static Configuration addLinkWalkStep(Configuration conf, String bucket, String tag, boolean keep)
+            throws IOException {
+        List<LinkWalkStep> steps = getLinkWalkSteps(conf);
+        steps.add(new LinkWalkStep(bucket, tag, keep));
+        conf.set(LINK_WALK_STEPS_PROPERTY, LinkWalkStep.toJSON(steps));
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the link walk steps (may be empty, never null)
+     * @throws IOException
+     *             if the steps can't be deserialized
+     */
+    public static List<LinkWalkStep> getLinkWalkSteps(Configuration conf) throws IOException {
+        String json = conf.get(LINK_WALK_STEPS_PROPERTY);
+
+        if (json == null) {
+            return new ArrayList<LinkWalkStep>();
+        }
+
+        return LinkWalkStep.fromJSON(json);
+    }
+
+    /**
+     * Set how many of a link walk hop's targets are fetched at once
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param concurrency
+     *            the number of concurrent fetches per hop, 1 to fetch them
+     *            one at a time
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setLinkWalkConcurrency(Configuration conf, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        conf.setInt(LINK_WALK_CONCURRENCY_PROPERTY, concurrency);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the number of concurrent fetches per link walk hop, default 8
+     */
+    public static int getLinkWalkConcurrency(Configuration conf) {
+        return conf.getInt(LINK_WALK_CONCURRENCY_PROPERTY, 8);
+    }
+
+    /**
+     * Set the size of a task's {@link com.basho.riak.hadoop.RiakLookup} cache
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param bytes
+     *            roughly how many bytes of keys and values to cache, 0 to not
+     *            cache
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setLookupCacheSize(Configuration conf, long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes cannot be negative");
+        }
+        conf.setLong(LOOKUP_CACHE_SIZE_PROPERTY, bytes);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the size in bytes of a task's
+     *         {@link com.basho.riak.hadoop.RiakLookup} cache, default 64MB
+     */
+    public static long getLookupCacheSize(Configuration conf) {
+        return conf.getLong(LOOKUP_CACHE_SIZE_PROPERTY, 64 * 1024 * 1024);
+    }
+
+    /**
+     * Set whether a {@link com.basho.riak.hadoop.RiakLookup} caches keys that
+     * are not found
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param cacheNotFound
+     *            true (the default) to cache not found keys
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setLookupNotFoundCaching(Configuration conf, boolean cacheNotFound) {
+        conf.setBoolean(LOOKUP_CACHE_NOTFOUND_PROPERTY, cacheNotFound);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return true if a {@link com.basho.riak.hadoop.RiakLookup} caches keys
+     *         that are not found
+     */
+    public static boolean isLookupNotFoundCaching(Configuration conf) {
+        return conf.getBoolean(LOOKUP_CACHE_NOTFOUND_PROPERTY, true);
+    }
+
+    /**
+     * Set how many requests a {@link com.basho.riak.hadoop.RiakLookup} has in
+     * flight for a batch of keys
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param concurrency
+     *            the number of concurrent requests
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setLookupConcurrency(Configuration conf, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        conf.setInt(LOOKUP_CONCURRENCY_PROPERTY, concurrency);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the number of concurrent requests for a batch of lookups,
+     *         default 4
+     */
+    public static int getLookupConcurrency(Configuration conf) {
+        return conf.getInt(LOOKUP_CONCURRENCY_PROPERTY, 4);
+    }
+
+    /**
+     * Record where the {@link com.basho.riak.hadoop.RiakSnapshot} of
+     * <code>bucket</code> was written
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param bucket
+     *            the bucket
+     * @param path
+     *            the snapshot file
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setSnapshotPath(Configuration conf, String bucket, Path path) {
+        conf.set(SNAPSHOT_PATH_PROPERTY + bucket, path.toString());
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @param bucket
+     *            the bucket
+     * @return the path of the {@link com.basho.riak.hadoop.RiakSnapshot} of
+     *         <code>bucket</code>, or null if there isn't one
+     */
+    public static Path getSnapshotPath(Configuration conf, String bucket) {
+        String path = conf.get(SNAPSHOT_PATH_PROPERTY + bucket);
+        return path == null ? null : new Path(path);
+    }
+
+    /**
+     * Record where the job's {@link com.basho.riak.hadoop.BucketKeyFilter} was
+     * written, use
+     * {@link com.basho.riak.hadoop.BucketKeyFilter#attach(Configuration, Path)}
+     * rather than calling this directly
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param path
+     *            the filter file
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setKeyFilterPath(Configuration conf, Path path) {
+        conf.set(KEY_FILTER_PATH_PROPERTY, path.toString());
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the path of the job's
+     *         {@link com.basho.riak.hadoop.BucketKeyFilter}, or null if there
+     *         isn't one
+     */
+    public static Path getKeyFilterPath(Configuration conf) {
+        String path = conf.get(KEY_FILTER_PATH_PROPERTY);
+        return path == null ? null : new Path(path);
+    }
+
+    /**
+     * Only read a fraction of the listed keys, chosen by
+     * {@link com.basho.riak.hadoop.KeySampler}
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param fraction
+     *            the fraction of keys to read, greater than 0 and at most 1
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setSampleFraction(Configuration conf, double fraction) {
+        if (fraction <= 0 || fraction > 1) {
+            throw new IllegalArgumentException("fraction must be greater than 0 and at most 1");
+        }
+        conf.set(SAMPLE_FRACTION_PROPERTY, Double.toString(fraction));
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the fraction of keys to read, 1 (the default) for all of them
+     */
+    public static double getSampleFraction(Configuration conf) {
+        return Double.parseDouble(conf.get(SAMPLE_FRACTION_PROPERTY, "1"));
+    }
+
+    /**
+     * Only read (at most) <code>size</code> of the listed keys, chosen by
+     * {@link com.basho.riak.hadoop.KeySampler}
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param size
+     *            the number of keys to read
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setSampleSize(Configuration conf, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1");
+        }
+        conf.setInt(SAMPLE_SIZE_PROPERTY, size);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the number of keys to read, 0 (the default) for no limit
+     */
+    public static int getSampleSize(Configuration conf) {
+        return conf.getInt(SAMPLE_SIZE_PROPERTY, 0);
+    }
+
+    /**
+     * Set the seed for {@link com.basho.riak.hadoop.KeySampler}, the same seed
+     * gives the same sample
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param seed
+     *            the seed
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setSampleSeed(Configuration conf, long seed) {
+        conf.setLong(SAMPLE_SEED_PROPERTY, seed);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the sample seed, default 0
+     */
+    public static long getSampleSeed(Configuration conf) {
+        return conf.getLong(SAMPLE_SEED_PROPERTY, 0);
+    }
+
+    /**
+     * Set the directory (on the default file system) where jobs keep the files
+     * they use to coordinate their tasks and runs. Files for a single run, such
+     * as input limit counts and checkpoints, go in a directory for the job
+     * under it, see {@link #getJobDirectory(Configuration, String)}.
+     * {@link com.basho.riak.hadoop.RiakOutputCommitter} deletes that directory
+     * when the job commits or aborts; jobs with another output committer must
+     * delete it themselves.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param dir
+     *            the working directory
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setWorkingDirectory(Configuration conf, Path dir) {
+        conf.set(WORKING_DIRECTORY_PROPERTY, dir.toString());
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the working directory, default <code>riak-hadoop</code> under
+     *         <code>hadoop.tmp.dir</code>
+     */
+    public static Path getWorkingDirectory(Configuration conf) {
+        String dir = conf.get(WORKING_DIRECTORY_PROPERTY);
+
+        if (dir == null) {
+            return new Path(conf.get("hadoop.tmp.dir", "/tmp"), "riak-hadoop");
+        }
+
+        return new Path(dir);
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @param jobId
+     *            the id of the job
+     * @return the directory under the working directory for files that only
+     *         last as long as the job with <code>jobId</code>
+     */
+    public static Path getJobDirectory(Configuration conf, String jobId) {
+        return new Path(getWorkingDirectory(conf), jobId);
+    }
+
+    /**
+     * Stop reading once the job's record readers have emitted about
+     * <code>limit</code> records, see {@link com.basho.riak.hadoop.InputLimit}.
+     * Splits are only planned for the first few multiples of <code>limit</code>
+     * keys.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param limit
+     *            the number of records to read
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setInputLimit(Configuration conf, long limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        conf.setLong(INPUT_LIMIT_PROPERTY, limit);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the number of records to read, 0 (the default) for all of them
+     */
+    public static long getInputLimit(Configuration conf) {
+        return conf.getLong(INPUT_LIMIT_PROPERTY, 0);
+    }
+
+    /**
+     * Turn on the node local {@link com.basho.riak.hadoop.RiakObjectCache} for
+     * {@link RiakInputFormat}
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param dir
+     *            a directory on each task tracker's local disk, shared by all
+     *            tasks (and jobs) that use the same path
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setObjectCacheDirectory(Configuration conf, String dir) {
+        conf.set(OBJECT_CACHE_DIRECTORY_PROPERTY, dir);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the local object cache directory, or null (the default) for no
+     *         cache
+     */
+    public static String getObjectCacheDirectory(Configuration conf) {
+        return conf.get(OBJECT_CACHE_DIRECTORY_PROPERTY);
+    }
+
+    /**
+     * Set how much local disk the {@link com.basho.riak.hadoop.RiakObjectCache}
+     * may use
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param bytes
+     *            the maximum size of the cache
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setObjectCacheSize(Configuration conf, long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("bytes must be at least 1");
+        }
+        conf.setLong(OBJECT_CACHE_SIZE_PROPERTY, bytes);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the maximum size of the object cache, default 1GB
+     */
+    public static long getObjectCacheSize(Configuration conf) {
+        return conf.getLong(OBJECT_CACHE_SIZE_PROPERTY, 1024L * 1024 * 1024);
+    }
+
+    /**
+     * Make the job incremental: each run only reads the objects modified since
+     * the last successful run with the same <code>name</code>, see
+     * {@link com.basho.riak.hadoop.Watermark}. Unless a last modified index is
+     * set with {@link #setLastModifiedIndex(Configuration, String, String)},
+     * every listed key is checked with a HEAD request before it is read.
+     * {@link com.basho.riak.hadoop.RiakKeyInputFormat} needs the index, and
+     * {@link com.basho.riak.hadoop.RiakIndexInputFormat} can't be incremental.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param name
+     *            the name to keep the watermark under, usually the job name
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setIncremental(Configuration conf, String name) {
+        conf.set(INCREMENTAL_NAME_PROPERTY, name);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the name of the job's watermark, or null if the job isn't
+     *         incremental
+     */
+    public static String getIncrementalName(Configuration conf) {
+        return conf.get(INCREMENTAL_NAME_PROPERTY);
+    }
+
+    /**
+     * Select the modified objects of an incremental job with an integer
+     * secondary index, rather than a HEAD request per key. The index must hold
+     * each object's last modified time in seconds since the epoch, and is
+     * used in place of the job's {@link KeyLister}.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param bucket
+     *            the bucket to read
+     * @param index
+     *            the name of the integer index, e.g. <code>lastmod_int</code>
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setLastModifiedIndex(Configuration conf, String bucket, String index) {
+        conf.set(LAST_MODIFIED_BUCKET_PROPERTY, bucket);
+        conf.set(LAST_MODIFIED_INDEX_PROPERTY, index);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the bucket for the last modified index, or null if there isn't
+     *         one
+     */
+    public static String getLastModifiedBucket(Configuration conf) {
+        return conf.get(LAST_MODIFIED_BUCKET_PROPERTY);
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the name of the last modified index, or null if there isn't one
+     */
+    public static String getLastModifiedIndex(Configuration conf) {
+        return conf.get(LAST_MODIFIED_INDEX_PROPERTY);
+    }
+
+    /**
+     * Have map tasks save how far through their split they are, so a retried
+     * attempt can skip what has been done, see
+     * {@link com.basho.riak.hadoop.Checkpoint}
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param seconds
+     *            the least time between checkpoints
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setCheckpointInterval(Configuration conf, int seconds) {
+        if (seconds < 1) {
+            throw new IllegalArgumentException("seconds must be at least 1");
+        }
+        conf.setInt(CHECKPOINT_INTERVAL_PROPERTY, seconds);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the seconds between checkpoints, 0 (the default) for none
+     */
+    public static int getCheckpointInterval(Configuration conf) {
+        return conf.getInt(CHECKPOINT_INTERVAL_PROPERTY, 0);
+    }
+
+    /**
+     * Keep a {@link com.basho.riak.hadoop.CompletionLedger} of the job's
+     * committed splits, so a failed run can be resumed
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param name
+     *            names the ledger, it must be the same for every run of the
+     *            job
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setCompletionLedger(Configuration conf, String name) {
+        if (name == null || name.trim().length() == 0) {
+            throw new IllegalArgumentException("name cannot be null or empty");
+        }
+        conf.set(LEDGER_PROPERTY, name);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return the name of the job's
+     *         {@link com.basho.riak.hadoop.CompletionLedger}, or null if it
+     *         doesn't keep one
+     */
+    public static String getCompletionLedger(Configuration conf) {
+        return conf.get(LEDGER_PROPERTY);
+    }
+
+    /**
+     * Skip the splits committed to the job's
+     * {@link com.basho.riak.hadoop.CompletionLedger} by earlier runs. Without
+     * this a run starts a new ledger.
+     * 
+     * @param conf
+     *            the {@link Configuration} to update
+     * @param resume
+     *            true to resume
+     * @return the updated {@link Configuration}
+     */
+    public static Configuration setResume(Configuration conf, boolean resume) {
+        conf.setBoolean(RESUME_PROPERTY, resume);
+        return conf;
+    }
+
+    /**
+     * @param conf
+     *            the {@link Configuration} to query
+     * @return true if the run resumes from the job's
+     *         {@link com.basho.riak.hadoop.CompletionLedger}, default false
+     */
+    public static boolean isResume(Configuration conf) {
+        return conf.getBoolean(RESUME_PROPERTY, false);
+    }
 }
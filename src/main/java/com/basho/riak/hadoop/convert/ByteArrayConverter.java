@@ -0,0 +1,50 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.convert;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.convert.ConversionException;
+import com.basho.riak.client.convert.Converter;
+
+/**
+ * Read only {@link Converter} that gives a mapper the value bytes of an
+ * object, without copying or decoding them.
+ * 
+ * @author russell
+ * 
+ */
+public class ByteArrayConverter implements Converter<byte[]> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.client.convert.Converter#toDomain(com.basho.riak.client
+     * .IRiakObject)
+     */
+    public byte[] toDomain(IRiakObject riakObject) throws ConversionException {
+        return riakObject == null ? null : riakObject.getValue();
+    }
+
+    /**
+     * Not supported, this converter is only for reading
+     * 
+     * @throws ConversionException
+     *             always
+     */
+    public IRiakObject fromDomain(byte[] domainObject, VClock vclock) throws ConversionException {
+        throw new ConversionException(getClass().getName() + " can only convert to domain objects");
+    }
+}
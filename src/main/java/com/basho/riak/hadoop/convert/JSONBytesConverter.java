@@ -0,0 +1,83 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.convert;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.convert.ConversionException;
+import com.basho.riak.client.convert.Converter;
+
+/**
+ * Read only {@link Converter} that parses JSON values straight from the value
+ * bytes, rather than decoding them to a String first like the client's
+ * JSONConverter does.
+ * 
+ * @author russell
+ * @param <T>
+ *            the domain type
+ * 
+ */
+public class JSONBytesConverter<T> implements Converter<T> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Class<T> clazz;
+
+    /**
+     * @param clazz
+     *            the domain type to parse values as
+     */
+    public JSONBytesConverter(Class<T> clazz) {
+        this.clazz = clazz;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.client.convert.Converter#toDomain(com.basho.riak.client
+     * .IRiakObject)
+     */
+    public T toDomain(IRiakObject riakObject) throws ConversionException {
+        if (riakObject == null) {
+            return null;
+        }
+
+        final byte[] value = riakObject.getValue();
+
+        if (value == null || value.length == 0) {
+            return null;
+        }
+
+        try {
+            return OBJECT_MAPPER.readValue(value, clazz);
+        } catch (IOException e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    /**
+     * Not supported, this converter is only for reading
+     * 
+     * @throws ConversionException
+     *             always
+     */
+    public IRiakObject fromDomain(T domainObject, VClock vclock) throws ConversionException {
+        throw new ConversionException(getClass().getName() + " can only convert to domain objects");
+    }
+}
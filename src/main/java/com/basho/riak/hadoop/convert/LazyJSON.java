@@ -0,0 +1,322 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.convert;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * A JSON document that is only parsed as far as it needs to be. The first
+ * access indexes where the value of each top level field starts (skipping
+ * over nested values without decoding them), after that each access parses
+ * just the requested path, starting from its top level field.
+ * 
+ * Paths are field names, e.g. <code>getString("address", "city")</code> is
+ * <code>doc.address.city</code>. Missing fields and JSON nulls come back as
+ * null.
+ * 
+ * An instance can be reused for the next record with {@link #set(byte[])}.
+ * Parsers come from one shared factory, which recycles their buffers.
+ * 
+ * @author russell
+ * 
+ */
+public class LazyJSON {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = OBJECT_MAPPER.getJsonFactory();
+
+    private byte[] bytes;
+    private int offset;
+    private int length;
+    private final Map<String, Integer> index = new HashMap<String, Integer>();
+    private boolean indexed;
+
+    public LazyJSON() {}
+
+    /**
+     * @param bytes
+     *            UTF-8 JSON, not copied
+     */
+    public LazyJSON(byte[] bytes) {
+        set(bytes);
+    }
+
+    /**
+     * Point this instance at a new document
+     * 
+     * @param bytes
+     *            UTF-8 JSON, not copied
+     */
+    public void set(byte[] bytes) {
+        set(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Point this instance at a new document
+     * 
+     * @param bytes
+     *            a buffer holding UTF-8 JSON, not copied
+     * @param offset
+     *            where the document starts
+     * @param length
+     *            the length of the document
+     */
+    public void set(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.indexed = false;
+        index.clear();
+    }
+
+    /**
+     * @param path
+     *            the field names
+     * @return true if the path exists (even if its value is null)
+     * @throws IOException
+     */
+    public boolean has(String... path) throws IOException {
+        JsonParser parser = seek(path);
+        if (parser == null) {
+            return false;
+        }
+        parser.close();
+        return true;
+    }
+
+    /**
+     * @param path
+     *            the field names
+     * @return the text of the value at <code>path</code>, or null
+     * @throws IOException
+     */
+    public String getString(String... path) throws IOException {
+        JsonParser parser = seek(path);
+        if (parser == null) {
+            return null;
+        }
+        try {
+            return parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @param path
+     *            the field names
+     * @return the numeric value at <code>path</code> as a Long, or null
+     * @throws IOException
+     *             if the value is not a number
+     */
+    public Long getLong(String... path) throws IOException {
+        JsonParser parser = seek(path);
+        if (parser == null) {
+            return null;
+        }
+        try {
+            return parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getLongValue();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @param path
+     *            the field names
+     * @return the numeric value at <code>path</code> as a Double, or null
+     * @throws IOException
+     *             if the value is not a number
+     */
+    public Double getDouble(String... path) throws IOException {
+        JsonParser parser = seek(path);
+        if (parser == null) {
+            return null;
+        }
+        try {
+            return parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getDoubleValue();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @param path
+     *            the field names
+     * @return the boolean value at <code>path</code>, or null
+     * @throws IOException
+     *             if the value is not a boolean
+     */
+    public Boolean getBoolean(String... path) throws IOException {
+        JsonParser parser = seek(path);
+        if (parser == null) {
+            return null;
+        }
+        try {
+            return parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getBooleanValue();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @param path
+     *            the field names
+     * @return the value at <code>path</code> as a tree, or null
+     * @throws IOException
+     */
+    public JsonNode getNode(String... path) throws IOException {
+        JsonParser parser = seek(path);
+        if (parser == null) {
+            return null;
+        }
+        try {
+            return parser.readValueAsTree();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Bind just the value at <code>path</code>
+     * 
+     * @param type
+     *            the type to bind to
+     * @param path
+     *            the field names
+     * @return the value at <code>path</code> bound to <code>type</code>, or
+     *         null
+     * @throws IOException
+     */
+    public <T> T get(Class<T> type, String... path) throws IOException {
+        JsonParser parser = seek(path);
+        if (parser == null) {
+            return null;
+        }
+        try {
+            return parser.readValueAs(type);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @return a parser positioned on the value at <code>path</code>, or null
+     *         if there is no such path
+     */
+    private JsonParser seek(String... path) throws IOException {
+        if (path.length == 0) {
+            JsonParser parser = FACTORY.createJsonParser(bytes, offset, length);
+            parser.nextToken();
+            return parser;
+        }
+
+        index();
+        Integer start = index.get(path[0]);
+
+        if (start == null) {
+            return null;
+        }
+
+        JsonParser parser = FACTORY.createJsonParser(bytes, start, offset + length - start);
+        parser.nextToken();
+
+        for (int i = 1; i < path.length; i++) {
+            if (!find(parser, path[i])) {
+                parser.close();
+                return null;
+            }
+        }
+
+        return parser;
+    }
+
+    /**
+     * Move <code>parser</code> from the start of an object to the value of
+     * its <code>field</code>, skipping over the other fields' values
+     */
+    private static boolean find(JsonParser parser, String field) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals(name)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+
+        return false;
+    }
+
+    /**
+     * Record the start of each top level field's value
+     */
+    private void index() throws IOException {
+        if (indexed) {
+            return;
+        }
+
+        index.clear();
+        JsonParser parser = FACTORY.createJsonParser(bytes, offset, length);
+
+        try {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                // parser offsets may or may not include the buffer offset,
+                // so work out the difference from where we know the object
+                // starts
+                long delta = start() - parser.getTokenLocation().getByteOffset();
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    index.put(name, (int) (parser.getTokenLocation().getByteOffset() + delta));
+                    parser.skipChildren();
+                }
+            }
+            indexed = true;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @return the index of the first byte of the document, after any byte
+     *         order mark and white space
+     */
+    private int start() {
+        int i = offset;
+        int end = offset + length;
+
+        if (length >= 3 && bytes[i] == (byte) 0xEF && bytes[i + 1] == (byte) 0xBB && bytes[i + 2] == (byte) 0xBF) {
+            i += 3;
+        }
+        while (i < end && (bytes[i] == ' ' || bytes[i] == '\t' || bytes[i] == '\n' || bytes[i] == '\r')) {
+            i++;
+        }
+
+        return i;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.convert;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.convert.ConversionException;
+import com.basho.riak.client.convert.Converter;
+
+/**
+ * Read only {@link Converter} that wraps each value in a {@link LazyJSON}, so
+ * a mapper that only needs a few fields of a large document doesn't pay to
+ * bind all of it. The value bytes are not copied.
+ * 
+ * @author russell
+ * 
+ */
+public class LazyJSONConverter implements Converter<LazyJSON> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.basho.riak.client.convert.Converter#toDomain(com.basho.riak.client
+     * .IRiakObject)
+     */
+    public LazyJSON toDomain(IRiakObject riakObject) throws ConversionException {
+        if (riakObject == null) {
+            return null;
+        }
+
+        final byte[] value = riakObject.getValue();
+
+        if (value == null || value.length == 0) {
+            return null;
+        }
+
+        return new LazyJSON(value);
+    }
+
+    /**
+     * Not supported, this converter is only for reading
+     * 
+     * @throws ConversionException
+     *             always
+     */
+    public IRiakObject fromDomain(LazyJSON domainObject, VClock vclock) throws ConversionException {
+        throw new ConversionException(getClass().getName() + " can only convert to domain objects");
+    }
+}
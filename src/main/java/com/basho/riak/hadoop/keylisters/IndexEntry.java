@@ -0,0 +1,99 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.keylisters;
+
+import com.basho.riak.hadoop.BucketKey;
+
+/**
+ * A key that matched a 2i query, and the index term it matched on.
+ * 
+ * @author russell
+ * 
+ */
+public class IndexEntry {
+
+    private final BucketKey key;
+    private final String term;
+
+    /**
+     * @param key
+     *            the matching bucket/key
+     * @param term
+     *            the index term, integer terms are in decimal
+     */
+    public IndexEntry(BucketKey key, String term) {
+        this.key = key;
+        this.term = term;
+    }
+
+    /**
+     * @return the bucket/key
+     */
+    public BucketKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return the index term
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((key == null) ? 0 : key.hashCode());
+        result = prime * result + ((term == null) ? 0 : term.hashCode());
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (!(obj instanceof IndexEntry)) {
+            return false;
+        }
+        IndexEntry other = (IndexEntry) obj;
+        if (key == null) {
+            if (other.key != null) {
+                return false;
+            }
+        } else if (!key.equals(other.key)) {
+            return false;
+        }
+        if (term == null) {
+            if (other.term != null) {
+                return false;
+            }
+        } else if (!term.equals(other.term)) {
+            return false;
+        }
+        return true;
+    }
+}
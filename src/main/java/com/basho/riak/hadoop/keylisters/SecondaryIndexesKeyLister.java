@@ -15,7 +15,10 @@ package com.basho.riak.hadoop.keylisters;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonEncoding;
@@ -27,6 +30,7 @@ import com.basho.riak.client.IRiakClient;
 import com.basho.riak.client.RiakException;
 import com.basho.riak.client.query.MapReduceResult;
 import com.basho.riak.client.query.functions.Args;
+import com.basho.riak.client.query.functions.JSSourceFunction;
 import com.basho.riak.client.query.functions.NamedErlangFunction;
 import com.basho.riak.client.query.indexes.BinIndex;
 import com.basho.riak.client.query.indexes.IntIndex;
@@ -50,6 +54,40 @@ public class SecondaryIndexesKeyLister implements KeyLister {
     private static final String KEY = "key";
     private static final String START = "start";
     private static final String END = "end";
+    private static final String INT = "int";
+
+    /**
+     * Map phase that emits [bucket, key, term] for each of an object's terms
+     * for the queried index that are in the queried range. 2i queries only
+     * return keys, so this is how we find the terms for a range query without
+     * bringing the objects back to hadoop. Riak still reads every matching
+     * object from disk to run it.
+     */
+    private static final String TERMS_IN_RANGE = "function(v, keyData, arg) {"
+                                                 + "  var terms = [];"
+                                                 + "  var add = function(name, value) {"
+                                                 + "    if (name !== arg.index) { return; }"
+                                                 + "    if (value instanceof Array) {"
+                                                 + "      for (var j = 0; j < value.length; j++) {"
+                                                 + "        add(name, value[j]);"
+                                                 + "      }"
+                                                 + "      return;"
+                                                 + "    }"
+                                                 + "    var term = arg['int'] ? parseInt(value, 10) : String(value);"
+                                                 + "    if (term >= arg.start && term <= arg.end) {"
+                                                 + "      terms.push([v.bucket, v.key, String(term)]);"
+                                                 + "    }"
+                                                 + "  };"
+                                                 + "  var index = v.values[0].metadata.index || {};"
+                                                 + "  if (index instanceof Array) {"
+                                                 + "    for (var i = 0; i < index.length; i++) {"
+                                                 + "      add(index[i][0], index[i][1]);"
+                                                 + "    }"
+                                                 + "  } else {"
+                                                 + "    for (var name in index) { add(name, index[name]); }"
+                                                 + "  }"
+                                                 + "  return terms;"
+                                                 + "}";
 
     private IndexQuery query;
 
@@ -174,6 +212,67 @@ public class SecondaryIndexesKeyLister implements KeyLister {
         return r.getResult(BucketKey.class);
     }
 
+    /**
+     * Get the matching keys along with the index term each one matched on.
+     * For a value query the term is the queried value, and this costs no more
+     * than {@link #getKeys(IRiakClient)}. A key appears once for every one of
+     * its terms that is in the range.
+     * 
+     * <p>
+     * <strong>Range queries are expensive.</strong> 2i only returns keys, so
+     * the terms for a range query are extracted by a JavaScript map phase,
+     * which makes Riak read and decode <em>every</em> matching object. That
+     * is a full read of the matched data, run in Riak's JavaScript VMs, before
+     * the job even starts. If the mapper doesn't need the term use
+     * {@link #getKeys(IRiakClient)}, and if it does, prefer a value query per
+     * term.
+     * </p>
+     * 
+     * @param client
+     * @return the matching {@link IndexEntry}s
+     * @throws RiakException
+     * @throws {@link IllegalStateException} is init was not called and the
+     *         lister is not set up to get keys
+     */
+    public List<IndexEntry> getEntries(IRiakClient client) throws RiakException {
+        if (query == null) {
+            throw new IllegalStateException("No index query");
+        }
+
+        final List<IndexEntry> entries = new ArrayList<IndexEntry>();
+
+        if (query instanceof BinValueQuery || query instanceof IntValueQuery) {
+            final String term = query instanceof BinValueQuery ? ((BinValueQuery) query).getValue()
+                    : String.valueOf(((IntValueQuery) query).getValue());
+
+            for (BucketKey key : getKeys(client)) {
+                entries.add(new IndexEntry(key, term));
+            }
+        } else {
+            final Map<String, Object> arg = new HashMap<String, Object>();
+            arg.put(INDEX, query.getIndex());
+
+            if (query instanceof IntRangeQuery) {
+                arg.put(START, ((IntRangeQuery) query).from());
+                arg.put(END, ((IntRangeQuery) query).to());
+                arg.put(INT, true);
+            } else {
+                arg.put(START, ((BinRangeQuery) query).from());
+                arg.put(END, ((BinRangeQuery) query).to());
+                arg.put(INT, false);
+            }
+
+            MapReduceResult r = client.mapReduce(query).addMapPhase(new JSSourceFunction(TERMS_IN_RANGE), arg)
+                    .execute();
+
+            for (String[] entry : r.getResult(String[].class)) {
+                entries.add(new IndexEntry(new BucketKey(entry[0], entry[1]), entry[2]));
+            }
+        }
+
+        return entries;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,102 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.Test;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * @author russell
+ * 
+ */
+public class AdaptiveThrottleTest {
+
+    private static final double DELTA = 0.0001;
+
+    @Test public void budgetIsSharedBetweenSlots() {
+        Configuration conf = new Configuration();
+        RiakConfig.setHadoopClusterSize(conf, 5);
+        conf.setInt("mapred.tasktracker.map.tasks.maximum", 4);
+        RiakConfig.setOpsPerSecondBudget(conf, 2000);
+
+        assertEquals(100, AdaptiveThrottle.create(conf, true).getRate(), DELTA);
+    }
+
+    @Test public void oneThrottlePerTask() {
+        Configuration conf = new Configuration();
+        RiakConfig.setHadoopClusterSize(conf, 5);
+        conf.setInt("mapred.tasktracker.map.tasks.maximum", 4);
+        conf.setInt("mapred.tasktracker.reduce.tasks.maximum", 1);
+        RiakConfig.setOpsPerSecondBudget(conf, 2000);
+
+        TaskAttemptContext map = new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, 0, 0));
+        AdaptiveThrottle throttle = AdaptiveThrottle.forTask(map);
+        // the reader, writer and lookups of a map only job share the map slot's share
+        assertSame(throttle, AdaptiveThrottle.forTask(new TaskAttemptContext(conf, map.getTaskAttemptID())));
+        assertEquals(100, throttle.getRate(), DELTA);
+
+        TaskAttemptContext reduce = new TaskAttemptContext(conf, new TaskAttemptID("test", 1, false, 0, 0));
+        assertEquals(400, AdaptiveThrottle.forTask(reduce).getRate(), DELTA);
+    }
+
+    @Test public void multiplicativeDecrease() {
+        AdaptiveThrottle throttle = new AdaptiveThrottle(100, 10);
+
+        throttle.failure();
+        assertEquals(50, throttle.getRate(), DELTA);
+
+        throttle.failure();
+        assertEquals("only one decrease per interval", 50, throttle.getRate(), DELTA);
+    }
+
+    @Test public void slowResponsesDecrease() {
+        AdaptiveThrottle throttle = new AdaptiveThrottle(100, 10);
+
+        throttle.success(20 * 1000 * 1000);
+        assertEquals(50, throttle.getRate(), DELTA);
+    }
+
+    @Test public void additiveIncreaseUpToBudget() {
+        AdaptiveThrottle throttle = new AdaptiveThrottle(100, 10);
+        throttle.failure();
+
+        for (int i = 0; i < 50; i++) {
+            throttle.success(1000);
+        }
+        double rate = throttle.getRate();
+        assertTrue(rate > 59 && rate < 61);
+
+        for (int i = 0; i < 10000; i++) {
+            throttle.success(1000);
+        }
+        assertEquals(100, throttle.getRate(), DELTA);
+    }
+
+    @Test public void disabled() throws Exception {
+        AdaptiveThrottle throttle = new AdaptiveThrottle(0, 0);
+        double rate = throttle.getRate();
+
+        throttle.failure();
+        throttle.acquire();
+        assertEquals(rate, throttle.getRate(), DELTA);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+/**
+ * @author russell
+ * 
+ */
+public class BucketKeyFilterTest {
+
+    private static final String BUCKET = "bucket";
+
+    @Test public void noFalseNegatives() throws Exception {
+        BucketKeyFilter filter = new BucketKeyFilter(1000, 0.01);
+        final List<BucketKey> keys = new ArrayList<BucketKey>();
+
+        for (int i = 0; i < 1000; i++) {
+            BucketKey key = new BucketKey(BUCKET, "key" + i);
+            filter.add(key);
+            keys.add(key);
+        }
+
+        assertEquals(keys, filter.filter(keys));
+    }
+
+    @Test public void falsePositiveRate() throws Exception {
+        BucketKeyFilter filter = new BucketKeyFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(new BucketKey(BUCKET, "key" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(new BucketKey(BUCKET, "other" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue("too many false positives " + falsePositives, falsePositives < 300);
+    }
+
+    @Test public void bucketIsPartOfTheKey() throws Exception {
+        BucketKeyFilter filter = new BucketKeyFilter(10, 0.001);
+        filter.add(new BucketKey("ab", "c"));
+
+        assertTrue(filter.mightContain(new BucketKey("ab", "c")));
+        assertFalse(filter.mightContain(new BucketKey("a", "bc")));
+    }
+
+    @Test public void writeRead() throws Exception {
+        BucketKeyFilter filter = new BucketKeyFilter(100, 0.01);
+        filter.add(new BucketKey(BUCKET, "key"));
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        filter.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+
+        BucketKeyFilter actual = new BucketKeyFilter();
+        actual.readFields(in);
+
+        assertTrue(actual.mightContain(new BucketKey(BUCKET, "key")));
+    }
+}
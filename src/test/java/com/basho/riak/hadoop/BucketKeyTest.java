@@ -17,6 +17,9 @@ import static org.junit.Assert.*;
 
 import java.util.Collection;
 
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.type.TypeFactory;
 import org.junit.Before;
@@ -52,4 +55,84 @@ public class BucketKeyTest {
         assertTrue(bks.contains(new BucketKey("indexed", "bert")));
     }
 
+    @Test public void writeRead() throws Exception {
+        BucketKey bk = new BucketKey("bucket", "k\u00e9y");
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        bk.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+
+        BucketKey actual = BucketKey.read(in);
+
+        assertEquals(bk, actual);
+        assertEquals(bk.hashCode(), actual.hashCode());
+        assertEquals("k\u00e9y", actual.getKey());
+    }
+
+    @Test public void binaryKeys() throws Exception {
+        BucketKey fromBytes = new BucketKey("b".getBytes("UTF-8"), "k".getBytes("UTF-8"));
+        BucketKey fromStrings = new BucketKey("b", "k");
+
+        assertEquals(fromStrings, fromBytes);
+        assertEquals(fromStrings.hashCode(), fromBytes.hashCode());
+
+        byte[] bytes = "k\u00e9y".getBytes("UTF-8");
+        BucketKey fromKeyBytes = new BucketKey("b".getBytes("UTF-8"), bytes);
+        assertSame(bytes, fromKeyBytes.getKeyBytes());
+        assertEquals("k\u00e9y", fromKeyBytes.getKey());
+        assertFalse(fromKeyBytes.equals(fromStrings));
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void rejectsKeysThatAreNotUTF8() throws Exception {
+        new BucketKey("b".getBytes("UTF-8"), new byte[] { (byte) 0xff, 0, 1 });
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void rejectsNullKey() {
+        new BucketKey("b", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void rejectsNullBucket() {
+        new BucketKey(null, new byte[0]);
+    }
+
+    @Test public void writableRoundTrip() throws Exception {
+        BucketKeyWritable written = new BucketKeyWritable(new BucketKey("bucket", "key"));
+        DataOutputBuffer out = new DataOutputBuffer();
+        written.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+
+        BucketKeyWritable read = new BucketKeyWritable(new BucketKey("other", "other"));
+        read.readFields(in);
+
+        assertEquals(written, read);
+        assertEquals(new BucketKey("bucket", "key"), read.get());
+    }
+
+    @Test public void rawComparator() throws Exception {
+        WritableComparator comparator = WritableComparator.get(BucketKeyWritable.class);
+        BucketKey[] keys = new BucketKey[] { new BucketKey("a", "z"), new BucketKey("b", "a"),
+                                            new BucketKey("b", "ab"), new BucketKey("bb", "a") };
+
+        for (BucketKey k1 : keys) {
+            for (BucketKey k2 : keys) {
+                byte[] b1 = serialize(k1);
+                byte[] b2 = serialize(k2);
+                assertEquals(Integer.signum(k1.compareTo(k2)),
+                             Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)));
+            }
+        }
+        assertTrue(keys[0].compareTo(keys[1]) < 0);
+        assertTrue(keys[1].compareTo(keys[2]) < 0);
+        assertTrue(keys[2].compareTo(keys[3]) < 0);
+    }
+
+    private static byte[] serialize(BucketKey bk) throws Exception {
+        DataOutputBuffer out = new DataOutputBuffer();
+        bk.write(out);
+        byte[] bytes = new byte[out.getLength()];
+        System.arraycopy(out.getData(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.convert.ByteArrayConverter;
+
+/**
+ * @author russell
+ * 
+ */
+public class CheckpointTest {
+
+    private FileSystem fs;
+    private Path dir;
+
+    @Before public void setUp() throws Exception {
+        File tmp = File.createTempFile("riak-checkpoint", "");
+        tmp.delete();
+        dir = new Path(tmp.toURI());
+        fs = FileSystem.getLocal(new Configuration());
+    }
+
+    @After public void tearDown() throws Exception {
+        fs.delete(dir, true);
+    }
+
+    @Test public void nothingToRestore() throws Exception {
+        assertEquals(0, new Checkpoint(fs, new Path(dir, "task_1"), "attempt_0", 1000).restore());
+    }
+
+    @Test public void retryRestoresOffset() throws Exception {
+        Path file = new Path(dir, "task_1");
+        Checkpoint first = new Checkpoint(fs, file, "attempt_0", 60000);
+        first.update(10);
+        // too soon after the last checkpoint
+        first.update(20);
+
+        assertEquals(10, new Checkpoint(fs, file, "attempt_0", 60000).restore());
+
+        first.save(30);
+        Checkpoint retry = new Checkpoint(fs, file, "attempt_0", 60000);
+        assertEquals(30, retry.restore());
+        retry.save(40);
+        assertEquals(40, new Checkpoint(fs, file, "attempt_0", 60000).restore());
+    }
+
+    @Test public void ignoresPartialTemp() throws Exception {
+        Path file = new Path(dir, "task_1");
+        // an attempt died while writing its first checkpoint
+        fs.create(new Path(dir, "task_1.attempt_1.tmp"), true).close();
+
+        Checkpoint retry = new Checkpoint(fs, file, "attempt_0", 60000);
+        assertEquals(0, retry.restore());
+        retry.save(5);
+        assertEquals(5, new Checkpoint(fs, file, "attempt_0", 60000).restore());
+    }
+
+    @Test public void speculativeAttemptsKeepTheFurthestOffset() throws Exception {
+        Path file = new Path(dir, "task_1");
+        Checkpoint first = new Checkpoint(fs, file, "attempt_0", 60000);
+        Checkpoint speculative = new Checkpoint(fs, file, "attempt_1", 60000);
+
+        speculative.save(50);
+        first.save(20);
+        assertEquals(50, new Checkpoint(fs, file, "attempt_2", 60000).restore());
+
+        // the speculative attempt died between the delete and the rename
+        FSDataOutputStream out = fs.create(new Path(dir, "task_1.attempt_1.tmp"), true);
+        out.writeLong(70);
+        out.close();
+        assertEquals(70, new Checkpoint(fs, file, "attempt_2", 60000).restore());
+    }
+
+    @Test(expected = IOException.class) public void rejectsBatchMappers() throws Exception {
+        Checkpoint.get(context(Batcher.class));
+    }
+
+    @Test(expected = IOException.class) public void rejectsMultithreadedMapperSubclasses() throws Exception {
+        Checkpoint.get(context(Threaded.class));
+    }
+
+    @Test public void acceptsMapOnlyRiakOutput() throws Exception {
+        assertNotNull(Checkpoint.get(context(Mapper.class)));
+    }
+
+    @SuppressWarnings("rawtypes") private TaskAttemptContext context(Class<? extends Mapper> mapper) {
+        Configuration conf = new Configuration();
+        conf.setInt("mapred.reduce.tasks", 0);
+        conf.setClass("mapreduce.outputformat.class", RiakOutputFormat.class, OutputFormat.class);
+        conf.setClass("mapreduce.map.class", mapper, Mapper.class);
+        RiakConfig.setWorkingDirectory(conf, dir);
+        RiakConfig.setCheckpointInterval(conf, 60);
+        return new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, 0, 0));
+    }
+
+    private static class Batcher extends RiakBatchMapper<byte[], Text, Text> {
+        Batcher() {
+            super(new ByteArrayConverter(), null);
+        }
+
+        @Override public void mapBatch(List<BucketKey> keys, List<byte[]> values, Context context) {}
+    }
+
+    private static class Threaded extends MultithreadedRiakMapper<Text, Text> {}
+}
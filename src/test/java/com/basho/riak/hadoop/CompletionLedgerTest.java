@@ -0,0 +1,110 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+
+/**
+ * @author russell
+ * 
+ */
+public class CompletionLedgerTest {
+
+    private static final BucketKey A = new BucketKey("b", "a");
+    private static final BucketKey B = new BucketKey("b", "b");
+    private static final BucketKey C = new BucketKey("b", "c");
+    private static final BucketKey D = new BucketKey("b", "d");
+
+    private Configuration conf;
+    private Path dir;
+
+    @Before public void setUp() throws Exception {
+        File tmp = File.createTempFile("riak-ledger", "");
+        tmp.delete();
+        dir = new Path(tmp.toURI());
+
+        conf = new Configuration();
+        conf.setInt("mapred.reduce.tasks", 0);
+        conf.setClass("mapreduce.outputformat.class", RiakOutputFormat.class, OutputFormat.class);
+        RiakConfig.setWorkingDirectory(conf, dir);
+        RiakConfig.setCompletionLedger(conf, "nightly");
+    }
+
+    @After public void tearDown() throws Exception {
+        FileSystem.getLocal(conf).delete(dir, true);
+    }
+
+    @Test public void resumeSkipsCommittedSplits() throws Exception {
+        List<BucketKey> keys = Arrays.asList(A, B, C, D);
+        JobContext failed = new JobContext(conf, new JobID("test", 1));
+        assertEquals(keys, CompletionLedger.begin(failed, keys));
+
+        TaskAttemptContext committed = attempt(0);
+        CompletionLedger.completed(committed, split(A, B));
+        assertTrue(CompletionLedger.hasPending(committed));
+        CompletionLedger.commitTask(committed);
+
+        TaskAttemptContext aborted = attempt(1);
+        CompletionLedger.completed(aborted, split(C));
+        CompletionLedger.abortTask(aborted);
+        assertFalse(CompletionLedger.hasPending(aborted));
+
+        RiakConfig.setResume(conf, true);
+        JobContext resumed = new JobContext(conf, new JobID("test", 2));
+        assertEquals(Arrays.asList(C, D), CompletionLedger.begin(resumed, keys));
+
+        // success leaves nothing to resume
+        CompletionLedger.commitJob(resumed);
+        assertEquals(keys, CompletionLedger.begin(resumed, keys));
+    }
+
+    @Test public void newRunClearsLedger() throws Exception {
+        List<BucketKey> keys = Arrays.asList(A, B);
+        CompletionLedger.begin(new JobContext(conf, new JobID("test", 1)), keys);
+        TaskAttemptContext committed = attempt(0);
+        CompletionLedger.completed(committed, split(A));
+        CompletionLedger.commitTask(committed);
+
+        assertEquals(keys, CompletionLedger.begin(new JobContext(conf, new JobID("test", 2)), keys));
+    }
+
+    private TaskAttemptContext attempt(int task) {
+        return new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, task, 0));
+    }
+
+    private RiakInputSplit split(BucketKey... keys) {
+        return new RiakInputSplit(Arrays.asList(keys), new RiakPBLocation("127.0.0.1", 8087));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author russell
+ * 
+ */
+public class InputLimitTest {
+
+    private FileSystem fs;
+    private Path dir;
+
+    @Before public void setUp() throws Exception {
+        fs = FileSystem.getLocal(new Configuration());
+        File tmp = File.createTempFile("riak-input-limit", "");
+        tmp.delete();
+        dir = new Path(tmp.getAbsolutePath());
+    }
+
+    @After public void tearDown() throws Exception {
+        fs.delete(dir, true);
+    }
+
+    @Test public void singleReaderStopsAtLimit() throws Exception {
+        InputLimit limit = new InputLimit(3, fs, dir, "task_1");
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(limit.reached());
+            limit.emitted();
+        }
+
+        assertTrue(limit.reached());
+        assertEquals(3, limit.total());
+    }
+
+    @Test public void sharedAcrossTasks() throws Exception {
+        InputLimit first = new InputLimit(10, fs, dir, "task_1");
+        InputLimit second = new InputLimit(10, fs, dir, "task_2");
+
+        for (int i = 0; i < 6; i++) {
+            first.emitted();
+        }
+        first.close();
+
+        for (int i = 0; i < 4; i++) {
+            second.emitted();
+        }
+
+        // publishes second's count, and sees first's
+        assertTrue(second.reached());
+        assertEquals(10, second.total());
+    }
+
+    @Test public void retriedAttemptIsNotCountedTwice() throws Exception {
+        InputLimit failed = new InputLimit(100, fs, dir, "task_1");
+        for (int i = 0; i < 5; i++) {
+            failed.emitted();
+        }
+        failed.close();
+
+        InputLimit retry = new InputLimit(100, fs, dir, "task_1");
+        retry.emitted();
+        retry.close();
+
+        assertEquals(5, retry.total());
+    }
+}
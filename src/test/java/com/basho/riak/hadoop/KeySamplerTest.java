@@ -0,0 +1,79 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author russell
+ * 
+ */
+public class KeySamplerTest {
+
+    private final List<BucketKey> keys = new ArrayList<BucketKey>();
+
+    @Before public void setUp() {
+        for (int i = 0; i < 10000; i++) {
+            keys.add(new BucketKey("bucket", "key" + i));
+        }
+    }
+
+    @Test public void fraction() {
+        List<BucketKey> sample = KeySampler.sample(keys, 0.1, 42);
+
+        assertTrue("sample size " + sample.size(), sample.size() > 800 && sample.size() < 1200);
+        assertEquals(sample, KeySampler.sample(keys, 0.1, 42));
+    }
+
+    @Test public void fractionIgnoresOrder() {
+        List<BucketKey> shuffled = new ArrayList<BucketKey>(keys);
+        Collections.shuffle(shuffled);
+
+        List<BucketKey> sample = new ArrayList<BucketKey>(KeySampler.sample(shuffled, 0.01, 7));
+        List<BucketKey> expected = new ArrayList<BucketKey>(KeySampler.sample(keys, 0.01, 7));
+        Collections.sort(sample);
+        Collections.sort(expected);
+
+        assertEquals(expected, sample);
+    }
+
+    @Test public void fixedSize() {
+        List<BucketKey> shuffled = new ArrayList<BucketKey>(keys);
+        Collections.shuffle(shuffled);
+
+        List<BucketKey> sample = KeySampler.sample(keys, 100, 7);
+        List<BucketKey> other = new ArrayList<BucketKey>(KeySampler.sample(shuffled, 100, 7));
+
+        assertEquals(100, sample.size());
+        // in input order
+        assertTrue(keys.indexOf(sample.get(0)) < keys.indexOf(sample.get(99)));
+
+        List<BucketKey> sorted = new ArrayList<BucketKey>(sample);
+        Collections.sort(sorted);
+        Collections.sort(other);
+        assertEquals(sorted, other);
+    }
+
+    @Test public void fixedSizeLargerThanInput() {
+        assertEquals(keys, KeySampler.sample(keys, 20000, 7));
+    }
+}
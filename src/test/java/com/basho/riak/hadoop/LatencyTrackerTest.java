@@ -0,0 +1,52 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author russell
+ * 
+ */
+public class LatencyTrackerTest {
+
+    @Test public void notEnoughSamples() {
+        LatencyTracker tracker = new LatencyTracker();
+        tracker.add(100);
+        assertEquals(-1, tracker.percentile(95));
+    }
+
+    @Test public void percentile() {
+        LatencyTracker tracker = new LatencyTracker();
+        for (int i = 1; i <= 100; i++) {
+            tracker.add(i);
+        }
+        assertEquals(95, tracker.percentile(95));
+        assertEquals(100, tracker.percentile(100));
+        assertEquals(50, tracker.percentile(50));
+    }
+
+    @Test public void onlyKeepsWindow() {
+        LatencyTracker tracker = new LatencyTracker(20);
+        for (int i = 0; i < 20; i++) {
+            tracker.add(1000);
+        }
+        for (int i = 0; i < 20; i++) {
+            tracker.add(1);
+        }
+        assertEquals(1, tracker.percentile(100));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.client.raw.RawClient;
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+
+/**
+ * @author russell
+ * 
+ */
+public class LocationSelectorTest {
+
+    private final RiakLocation host1 = new RiakPBLocation("host1", 8087);
+    private final RiakLocation host2 = new RiakPBLocation("host2", 8087);
+    private final RiakLocation host3 = new RiakPBLocation("host3", 8087);
+
+    private RawClient client1;
+    private RawClient client2;
+    private RawClient client3;
+    private LocationSelector selector;
+    private long time = System.currentTimeMillis();
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before public void setUp() throws Exception {
+        client1 = mock(RawClient.class);
+        client2 = mock(RawClient.class);
+        client3 = mock(RawClient.class);
+
+        selector = new LocationSelector(new RiakLocation[] { host1, host2, host3 }) {
+            @Override protected RawClient newClient(RiakLocation location) throws IOException {
+                if (host1.equals(location)) {
+                    return client1;
+                } else if (host2.equals(location)) {
+                    return client2;
+                }
+                return client3;
+            }
+
+            @Override protected long now() {
+                return time;
+            }
+        };
+    }
+
+    @Test public void prefersFirstCandidate() {
+        assertEquals(host1, selector.select());
+        selector.success(host2, 1000);
+        selector.success(host1, 2000);
+        assertEquals("a bit slower isn't degraded", host1, selector.select());
+    }
+
+    @Test public void switchesWhenDegraded() {
+        selector.success(host2, 1000);
+        selector.success(host1, 10000);
+        assertEquals(host2, selector.select());
+    }
+
+    @Test public void switchesOnFailure() {
+        assertEquals(host1, selector.select());
+        selector.failure(host1);
+        assertEquals(host2, selector.select());
+        selector.failure(host2);
+        assertEquals(host3, selector.select());
+    }
+
+    @Test public void allSuspended() {
+        selector.failure(host2);
+        selector.failure(host3);
+        selector.failure(host1);
+        selector.failure(host1);
+        assertEquals("host2 comes back first", host2, selector.select());
+    }
+
+    @Test public void probeSuspendsDownLocations() throws Exception {
+        doThrow(new IOException()).when(client1).ping();
+        selector.probe();
+        assertEquals(host2, selector.select());
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void unknownLocation() {
+        selector.success(new RiakPBLocation("host4", 8087), 1000);
+    }
+
+    @Test public void returnsToPreferredWhenSuspensionExpires() {
+        selector.failure(host1);
+        assertEquals(host2, selector.select());
+        assertEquals(host2, selector.select());
+
+        time += 60000;
+        assertEquals(host1, selector.select());
+    }
+
+    @Test public void probesDegradedPreferred() {
+        selector.success(host2, 1000);
+        selector.success(host1, 10000);
+        assertEquals(host2, selector.select());
+
+        int toHost1 = 0;
+        for (int i = 0; i < LocationSelector.PROBE_INTERVAL; i++) {
+            if (host1.equals(selector.select())) {
+                toHost1++;
+            }
+        }
+        assertEquals(1, toHost1);
+
+        // the probes show host1 has recovered
+        for (int i = 0; i < 20; i++) {
+            selector.success(host1, 1000);
+        }
+        assertEquals(host1, selector.select());
+        assertEquals(host1, selector.select());
+    }
+}
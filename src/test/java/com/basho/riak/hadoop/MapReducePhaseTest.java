@@ -0,0 +1,86 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.basho.riak.client.query.BucketKeyMapReduce;
+import com.basho.riak.client.query.functions.JSSourceFunction;
+import com.basho.riak.client.query.functions.NamedErlangFunction;
+import com.basho.riak.client.query.functions.NamedJSFunction;
+
+/**
+ * @author russell
+ * 
+ */
+public class MapReducePhaseTest {
+
+    private static final String SOURCE = "function(v) { return [v.key]; }";
+
+    @Mock private BucketKeyMapReduce mapReduce;
+
+    @Before public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test public void roundTrip() throws Exception {
+        final Map<String, Object> arg = new HashMap<String, Object>();
+        arg.put("field", "name");
+
+        final List<MapReducePhase> phases = new ArrayList<MapReducePhase>();
+        phases.add(new MapReducePhase(MapReducePhase.Type.MAP, new JSSourceFunction(SOURCE), arg));
+        phases.add(new MapReducePhase(MapReducePhase.Type.MAP, new NamedJSFunction("Riak.mapValuesJson"), null));
+        phases.add(new MapReducePhase(MapReducePhase.Type.MAP, new NamedErlangFunction("riak_kv_mapreduce",
+                                                                                         "map_object_value"), null));
+        phases.add(new MapReducePhase(MapReducePhase.Type.REDUCE, new NamedErlangFunction("riak_kv_mapreduce",
+                                                                                            "reduce_sum"), null));
+
+        final List<MapReducePhase> actual = MapReducePhase.fromJSON(MapReducePhase.toJSON(phases));
+
+        assertEquals(4, actual.size());
+        assertEquals(SOURCE, ((JSSourceFunction) actual.get(0).getFunction()).getSource());
+        assertEquals(arg, actual.get(0).getArg());
+        assertEquals("Riak.mapValuesJson", ((NamedJSFunction) actual.get(1).getFunction()).getFunction());
+        assertNull(actual.get(1).getArg());
+        assertTrue(actual.get(2).getFunction() instanceof NamedErlangFunction);
+        assertEquals("map_object_value", ((NamedErlangFunction) actual.get(2).getFunction()).getFun());
+        assertEquals(MapReducePhase.Type.REDUCE, actual.get(3).getType());
+        assertEquals("reduce_sum", ((NamedErlangFunction) actual.get(3).getFunction()).getFun());
+    }
+
+    @Test public void addTo() {
+        final JSSourceFunction function = new JSSourceFunction(SOURCE);
+
+        new MapReducePhase(MapReducePhase.Type.MAP, function, null).addTo(mapReduce);
+        new MapReducePhase(MapReducePhase.Type.MAP, function, "arg").addTo(mapReduce);
+        new MapReducePhase(MapReducePhase.Type.REDUCE, function, null).addTo(mapReduce);
+
+        verify(mapReduce).addMapPhase(function);
+        verify(mapReduce).addMapPhase(function, "arg");
+        verify(mapReduce).addReducePhase(function);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.Test;
+
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+
+/**
+ * @author russell
+ * 
+ */
+public class MultithreadedRiakMapperTest {
+
+    private static final int RECORDS = 200;
+
+    @Test public void mapsEveryRecordOnce() throws Exception {
+        Configuration conf = new Configuration();
+        RiakConfig.setThreadedMapperClass(conf, KeyMapper.class);
+        RiakConfig.setMapperThreads(conf, 4);
+
+        final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+        RecordWriter<Text, Text> writer = new RecordWriter<Text, Text>() {
+            @Override public void write(Text key, Text value) {
+                written.add(key.toString());
+            }
+
+            @Override public void close(TaskAttemptContext context) {}
+        };
+
+        MultithreadedRiakMapper<Text, Text> mapper = new MultithreadedRiakMapper<Text, Text>();
+        Mapper<BucketKey, RiakResponse, Text, Text>.Context context = mapper.new Context(conf, new TaskAttemptID(),
+                                                                                          new ListReader(RECORDS),
+                                                                                          writer, null,
+                                                                                          mock(StatusReporter.class),
+                                                                                          null);
+        mapper.run(context);
+
+        assertEquals(RECORDS, written.size());
+        assertEquals(RECORDS, new HashSet<String>(written).size());
+    }
+
+    @Test public void prefetchKeepsOrder() throws Exception {
+        Configuration conf = new Configuration();
+        RiakConfig.setFetchConcurrency(conf, 8);
+
+        List<BucketKey> keys = new ArrayList<BucketKey>();
+        for (int i = 0; i < RECORDS; i++) {
+            keys.add(new BucketKey("b", String.valueOf(i)));
+        }
+
+        SlowReader reader = new SlowReader();
+        reader.initialize(new RiakInputSplit(keys, new RiakLocation[] { new RiakPBLocation("host", 8087) }),
+                          new TaskAttemptContext(conf, new TaskAttemptID()));
+
+        int expected = 0;
+        while (reader.nextKeyValue()) {
+            assertEquals(String.valueOf(expected), reader.getCurrentKey().getKey());
+            assertEquals("value" + expected, reader.getCurrentValue());
+            expected++;
+        }
+        reader.close();
+
+        assertEquals(RECORDS, expected);
+        assertTrue("expected concurrent reads", reader.maxConcurrent > 1);
+    }
+
+    public static class KeyMapper extends Mapper<BucketKey, RiakResponse, Text, Text> {
+        @Override protected void map(BucketKey key, RiakResponse value, Context context) throws IOException,
+                InterruptedException {
+            context.write(new Text(key.getKey()), new Text(Thread.currentThread().getName()));
+        }
+    }
+
+    private static class SlowReader extends AbstractRiakRecordReader<String> {
+        private int concurrent;
+        private int maxConcurrent;
+
+        @Override protected boolean canPrefetch() {
+            return true;
+        }
+
+        @Override protected String read(BucketKey key) throws IOException, InterruptedException {
+            synchronized (this) {
+                maxConcurrent = Math.max(maxConcurrent, ++concurrent);
+            }
+            Thread.sleep((Integer.parseInt(key.getKey()) * 7) % 3);
+            synchronized (this) {
+                concurrent--;
+            }
+            return "value" + key.getKey();
+        }
+    }
+
+    private static class ListReader extends RecordReader<BucketKey, RiakResponse> {
+        private final Iterator<BucketKey> keys;
+        private BucketKey key;
+
+        ListReader(int records) {
+            Set<BucketKey> all = new HashSet<BucketKey>();
+            for (int i = 0; i < records; i++) {
+                all.add(new BucketKey("b", String.valueOf(i)));
+            }
+            keys = all.iterator();
+        }
+
+        @Override public void initialize(InputSplit split, TaskAttemptContext context) {}
+
+        @Override public boolean nextKeyValue() {
+            key = keys.hasNext() ? keys.next() : null;
+            return key != null;
+        }
+
+        @Override public BucketKey getCurrentKey() {
+            return key;
+        }
+
+        @Override public RiakResponse getCurrentValue() {
+            return null;
+        }
+
+        @Override public float getProgress() {
+            return 0;
+        }
+
+        @Override public void close() {}
+    }
+}
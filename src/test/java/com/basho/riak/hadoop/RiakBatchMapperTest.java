@@ -0,0 +1,109 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.builders.RiakObjectBuilder;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.convert.ByteArrayConverter;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakBatchMapperTest {
+
+    @Test public void batches() throws Exception {
+        Configuration conf = new Configuration();
+        RiakConfig.setMapperBatchSize(conf, 10);
+
+        BatchRecorder mapper = new BatchRecorder();
+        Mapper<BucketKey, RiakResponse, Text, Text>.Context context = mapper.new Context(conf, new TaskAttemptID(),
+                                                                                          new Reader(25), null, null,
+                                                                                          mock(StatusReporter.class),
+                                                                                          null);
+        mapper.run(context);
+
+        assertEquals(3, mapper.batches.size());
+        assertEquals(Integer.valueOf(10), mapper.batches.get(0));
+        assertEquals(Integer.valueOf(10), mapper.batches.get(1));
+        assertEquals(Integer.valueOf(5), mapper.batches.get(2));
+        assertEquals("24", mapper.lastValue);
+    }
+
+    private static class BatchRecorder extends RiakBatchMapper<byte[], Text, Text> {
+        private final List<Integer> batches = new ArrayList<Integer>();
+        private String lastValue;
+
+        BatchRecorder() {
+            super(new ByteArrayConverter(), null);
+        }
+
+        @Override public void mapBatch(List<BucketKey> keys, List<byte[]> values, Context context)
+                throws IOException, InterruptedException {
+            assertEquals(keys.size(), values.size());
+            batches.add(keys.size());
+            lastValue = new String(values.get(values.size() - 1));
+        }
+    }
+
+    private static class Reader extends RecordReader<BucketKey, RiakResponse> {
+        private final int records;
+        private int current = -1;
+
+        Reader(int records) {
+            this.records = records;
+        }
+
+        @Override public void initialize(InputSplit split, TaskAttemptContext context) {}
+
+        @Override public boolean nextKeyValue() {
+            return ++current < records;
+        }
+
+        @Override public BucketKey getCurrentKey() {
+            return new BucketKey("b", String.valueOf(current));
+        }
+
+        @Override public RiakResponse getCurrentValue() {
+            String key = String.valueOf(current);
+            IRiakObject o = RiakObjectBuilder.newBuilder("b", key).withValue(key).build();
+            return new RiakResponse("vclock".getBytes(), new IRiakObject[] { o });
+        }
+
+        @Override public float getProgress() {
+            return 0;
+        }
+
+        @Override public void close() {}
+    }
+}
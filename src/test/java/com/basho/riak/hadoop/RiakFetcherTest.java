@@ -0,0 +1,193 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.basho.riak.client.raw.FetchMeta;
+import com.basho.riak.client.raw.RawClient;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakFetcherTest {
+
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "key";
+
+    private final RiakLocation host1 = new RiakPBLocation("host1", 8087);
+    private final RiakLocation host2 = new RiakPBLocation("host2", 8087);
+    private final BucketKey bk = new BucketKey(BUCKET, KEY);
+
+    private RawClient client1;
+    private RawClient client2;
+    private LocationSelector selector;
+    private Configuration conf;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before public void setUp() throws Exception {
+        client1 = mock(RawClient.class);
+        client2 = mock(RawClient.class);
+        conf = new Configuration();
+
+        selector = new LocationSelector(new RiakLocation[] { host1, host2 }) {
+            @Override protected RawClient newClient(RiakLocation location) throws IOException {
+                return host1.equals(location) ? client1 : client2;
+            }
+        };
+    }
+
+    @Test public void failsOver() throws Exception {
+        RiakResponse expected = new RiakResponse(new byte[0]);
+        when(client1.fetch(BUCKET, KEY)).thenThrow(new IOException());
+        when(client2.fetch(BUCKET, KEY)).thenReturn(expected);
+
+        RiakFetcher fetcher = new RiakFetcher(selector, conf, new AdaptiveThrottle(0, 0));
+
+        assertSame(expected, fetcher.fetch(bk));
+    }
+
+    @Test public void usesConfiguredFetchMeta() throws Exception {
+        RiakResponse expected = new RiakResponse(new byte[0]);
+        when(client1.fetch(eq(BUCKET), eq(KEY), any(FetchMeta.class))).thenReturn(expected);
+
+        RiakConfig.setInputR(conf, 2);
+        RiakConfig.setInputBasicQuorum(conf, true);
+        RiakFetcher fetcher = new RiakFetcher(selector, conf, new AdaptiveThrottle(0, 0));
+
+        assertSame(expected, fetcher.fetch(bk));
+
+        ArgumentCaptor<FetchMeta> meta = ArgumentCaptor.forClass(FetchMeta.class);
+        verify(client1).fetch(eq(BUCKET), eq(KEY), meta.capture());
+        assertEquals(Integer.valueOf(2), meta.getValue().getR());
+        assertEquals(Boolean.TRUE, meta.getValue().getBasicQuorum());
+    }
+
+    @Test public void givesUpAfterAttempts() throws Exception {
+        when(client1.fetch(BUCKET, KEY)).thenThrow(new IOException());
+        when(client2.fetch(BUCKET, KEY)).thenReturn(new RiakResponse(new byte[0]));
+
+        RiakConfig.setFetchAttempts(conf, 1);
+        RiakFetcher fetcher = new RiakFetcher(selector, conf, new AdaptiveThrottle(0, 0));
+
+        try {
+            fetcher.fetch(bk);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // NO-OP
+        }
+    }
+
+    @Test public void timesOutAndRetries() throws Exception {
+        RiakResponse expected = new RiakResponse(new byte[0]);
+        when(client1.fetch(BUCKET, KEY)).thenAnswer(new Answer<RiakResponse>() {
+            public RiakResponse answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(5000);
+                return null;
+            }
+        });
+        when(client2.fetch(BUCKET, KEY)).thenReturn(expected);
+
+        RiakConfig.setFetchTimeout(conf, 50);
+        RiakFetcher fetcher = new RiakFetcher(selector, conf, new AdaptiveThrottle(0, 0));
+
+        try {
+            assertSame(expected, fetcher.fetch(bk));
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test public void runtimeExceptionsAreRetried() throws Exception {
+        RiakResponse expected = new RiakResponse(new byte[0]);
+        when(client1.fetch(BUCKET, KEY)).thenThrow(new IllegalStateException());
+        when(client2.fetch(BUCKET, KEY)).thenReturn(expected);
+
+        RiakFetcher fetcher = new RiakFetcher(selector, conf, new AdaptiveThrottle(0, 0));
+
+        assertSame(expected, fetcher.fetch(bk));
+        // host1 is suspended
+        assertSame(host2, selector.select());
+    }
+
+    @Test public void cancelledFetchesAreNotRecorded() throws Exception {
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        selector = new LocationSelector(new RiakLocation[] { host1, host2 }) {
+            @Override protected RawClient newClient(RiakLocation location) throws IOException {
+                return host1.equals(location) ? client1 : client2;
+            }
+
+            @Override public synchronized void failure(RiakLocation location) {
+                failures.incrementAndGet();
+                super.failure(location);
+            }
+        };
+        RiakResponse expected = new RiakResponse(new byte[0]);
+        when(client1.fetch(BUCKET, KEY)).thenAnswer(new Answer<RiakResponse>() {
+            public RiakResponse answer(InvocationOnMock invocation) throws Throwable {
+                try {
+                    Thread.sleep(5000);
+                    return null;
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                } finally {
+                    cancelled.countDown();
+                }
+            }
+        });
+        when(client2.fetch(BUCKET, KEY)).thenReturn(expected);
+
+        RiakConfig.setFetchTimeout(conf, 50);
+        RiakFetcher fetcher = new RiakFetcher(selector, conf, new AdaptiveThrottle(0, 0));
+
+        try {
+            assertSame(expected, fetcher.fetch(bk));
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            // just the timeout, not the interrupted request as well
+            assertEquals(1, failures.get());
+        } finally {
+            fetcher.close();
+        }
+    }
+}
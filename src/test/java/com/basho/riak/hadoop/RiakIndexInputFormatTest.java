@@ -0,0 +1,79 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.junit.Test;
+
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+import com.basho.riak.hadoop.keylisters.IndexEntry;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakIndexInputFormatTest {
+
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "key";
+
+    @Test public void getSplits() throws Exception {
+        final List<IndexEntry> entries = new ArrayList<IndexEntry>();
+        for (int i = 0; i < 25; i++) {
+            entries.add(new IndexEntry(new BucketKey(BUCKET, KEY + i), "term" + i));
+        }
+
+        RiakLocation[] locations = new RiakLocation[] { new RiakPBLocation("host1", 8091),
+                                                       new RiakPBLocation("host2", 8091) };
+
+        List<InputSplit> splits = RiakIndexInputFormat.getSplits(entries, locations, 10);
+
+        assertEquals(3, splits.size());
+
+        RiakIndexInputSplit second = (RiakIndexInputSplit) splits.get(1);
+        assertEquals(10, second.getLength());
+        assertEquals(locations[1], second.getLocation());
+        assertEquals(new BucketKey(BUCKET, KEY + 10), second.getInputs().iterator().next());
+        assertEquals("term10", second.getTerms().get(0));
+    }
+
+    @Test public void writeReadSplit() throws Exception {
+        final List<IndexEntry> entries = new ArrayList<IndexEntry>();
+        entries.add(new IndexEntry(new BucketKey(BUCKET, KEY), "1"));
+        entries.add(new IndexEntry(new BucketKey(BUCKET, KEY), "2"));
+
+        RiakIndexInputSplit split = new RiakIndexInputSplit(entries,
+                                                            new RiakLocation[] { new RiakPBLocation("host1", 8091) });
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        split.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+
+        RiakIndexInputSplit actual = new RiakIndexInputSplit();
+        actual.readFields(in);
+
+        assertEquals(split, actual);
+        assertEquals(2, actual.getTerms().size());
+        assertEquals("2", actual.getTerms().get(1));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+import com.basho.riak.hadoop.keylisters.IndexEntry;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakIndexRecordReaderTest {
+
+    private Configuration conf;
+    private Path dir;
+    private RiakIndexInputSplit split;
+
+    @Before public void setUp() throws Exception {
+        File tmp = File.createTempFile("riak-index-reader", "");
+        tmp.delete();
+        dir = new Path(tmp.toURI());
+
+        conf = new Configuration();
+        split = new RiakIndexInputSplit(Arrays.asList(new IndexEntry(new BucketKey("b", "k1"), "t1"),
+                                                      new IndexEntry(new BucketKey("b", "k2"), "t2"),
+                                                      new IndexEntry(new BucketKey("b", "k3"), "t3")),
+                                        new RiakLocation[] { new RiakPBLocation("127.0.0.1", 8087) });
+    }
+
+    @After public void tearDown() throws Exception {
+        FileSystem.getLocal(conf).delete(dir, true);
+    }
+
+    @Test public void pairsKeysWithTerms() throws Exception {
+        RiakIndexRecordReader reader = new RiakIndexRecordReader();
+        reader.initialize(split, new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, 0, 0)));
+
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(reader.nextKeyValue());
+            assertEquals("k" + i, reader.getCurrentKey().getKey());
+            assertEquals("t" + i, reader.getCurrentValue().toString());
+        }
+        assertFalse(reader.nextKeyValue());
+        reader.close();
+    }
+
+    @Test public void restoredCheckpointKeepsTermsAligned() throws Exception {
+        conf.setInt("mapred.reduce.tasks", 0);
+        conf.setClass("mapreduce.outputformat.class", RiakOutputFormat.class, OutputFormat.class);
+        RiakConfig.setWorkingDirectory(conf, dir);
+        RiakConfig.setCheckpointInterval(conf, 60);
+
+        // the failed attempt mapped the first two keys
+        Checkpoint.get(new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, 0, 0))).save(2);
+
+        RiakIndexRecordReader reader = new RiakIndexRecordReader();
+        reader.initialize(split, new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, 0, 1)));
+
+        assertTrue(reader.nextKeyValue());
+        assertEquals("k3", reader.getCurrentKey().getKey());
+        assertEquals("t3", reader.getCurrentValue().toString());
+        assertFalse(reader.nextKeyValue());
+        reader.close();
+    }
+}
@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -29,6 +30,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import com.basho.riak.hadoop.config.NoRiakLocationsException;
+import com.basho.riak.hadoop.config.RiakConfig;
 import com.basho.riak.hadoop.config.RiakLocation;
 import com.basho.riak.hadoop.config.RiakPBLocation;
 
@@ -109,5 +111,47 @@ public class RiakInputFormatTest {
         assertEquals("Should be 100 splits of 999 keys", 100, _999SplitCnt);
         assertEquals("Should be 1 split of 101 keys", 1, _101SplitCnt);
         assertEquals("Should be 0 splits of with neither 999 or 101 keys", 0, otherSplitCnt);
+
+        RiakInputSplit second = (RiakInputSplit) splits.get(1);
+        assertEquals(locations[1], second.getLocation());
+        assertEquals(4, second.getRiakLocations().length);
+        assertEquals(locations[0], second.getRiakLocations()[3]);
+        // only the preferred location is a locality hint
+        assertEquals(1, second.getLocations().length);
+        assertEquals(locations[1].asString(), second.getLocations()[0]);
+    }
+
+    @Test public void smallLimitBoundsSplits() throws Exception {
+        final List<BucketKey> bks = new ArrayList<BucketKey>();
+        for (int i = 0; i < 100000; i++) {
+            bks.add(new BucketKey(BUCKET, KEY + i));
+        }
+        RiakLocation[] locations = new RiakLocation[] { new RiakPBLocation("host1", 8091) };
+        Configuration conf = new Configuration();
+        RiakConfig.setHadoopClusterSize(conf, 4);
+
+        assertEquals(40, RiakInputFormat.planSplits(bks, locations, conf).size());
+
+        RiakConfig.setInputLimit(conf, 100);
+        List<InputSplit> splits = RiakInputFormat.planSplits(bks, locations, conf);
+        long planned = 0;
+        for (InputSplit split : splits) {
+            planned += split.getLength();
+        }
+        assertEquals(100 * RiakInputFormat.LIMIT_HEADROOM, planned);
+        assertEquals(4, splits.size());
+    }
+
+    @Test public void getCandidates() {
+        RiakLocation[] locations = new RiakLocation[] { new RiakPBLocation("host1", 8091),
+                                                       new RiakPBLocation("host2", 8091),
+                                                       new RiakPBLocation("host3", 8091) };
+
+        RiakLocation[] candidates = RiakInputFormat.getCandidates(locations, 2);
+
+        assertEquals(3, candidates.length);
+        assertEquals(locations[2], candidates[0]);
+        assertEquals(locations[0], candidates[1]);
+        assertEquals(locations[1], candidates[2]);
     }
 }
@@ -0,0 +1,139 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.RiakLink;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakLinkWalkRecordReaderTest {
+
+    @Mock private RiakResponse first;
+    @Mock private RiakResponse second;
+    @Mock private IRiakObject firstObject;
+    @Mock private IRiakObject secondObject;
+
+    @Before public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test public void matches() {
+        final RiakLink link = new RiakLink("people", "bob", "friend");
+
+        assertTrue(new LinkWalkStep(null, null, false).matches(link));
+        assertTrue(new LinkWalkStep("people", LinkWalkStep.ANY, false).matches(link));
+        assertTrue(new LinkWalkStep("people", "friend", false).matches(link));
+        assertFalse(new LinkWalkStep("people", "parent", false).matches(link));
+        assertFalse(new LinkWalkStep("dogs", null, false).matches(link));
+    }
+
+    @Test public void followDeduplicatesTargets() {
+        when(first.iterator()).thenReturn(iterator(firstObject));
+        when(second.iterator()).thenReturn(iterator(secondObject));
+        when(firstObject.getLinks()).thenReturn(Arrays.asList(new RiakLink("people", "bob", "friend"),
+                                                              new RiakLink("people", "sue", "parent")));
+        when(secondObject.getLinks()).thenReturn(Arrays.asList(new RiakLink("people", "bob", "friend"),
+                                                               new RiakLink("people", "ann", "friend")));
+
+        final List<RiakResponse> reached = new ArrayList<RiakResponse>();
+        reached.add(first);
+        reached.add(second);
+
+        Set<BucketKey> targets = RiakLinkWalkRecordReader.follow(new LinkWalkStep("people", "friend", true), reached);
+
+        assertEquals(2, targets.size());
+        Iterator<BucketKey> it = targets.iterator();
+        assertEquals(new BucketKey("people", "bob"), it.next());
+        assertEquals(new BucketKey("people", "ann"), it.next());
+    }
+
+    @Test public void fetchesEachTargetOncePerHop() throws Exception {
+        final RiakFetcher fetcher = mock(RiakFetcher.class);
+        final BucketKey root = new BucketKey("people", "root");
+        final BucketKey bob = new BucketKey("people", "bob");
+        final BucketKey ann = new BucketKey("people", "ann");
+        final BucketKey sue = new BucketKey("people", "sue");
+        when(fetcher.fetch(root)).thenReturn(linksTo(bob, ann));
+        when(fetcher.fetch(bob)).thenReturn(linksTo(sue));
+        when(fetcher.fetch(ann)).thenReturn(linksTo(sue));
+        when(fetcher.fetch(sue)).thenReturn(linksTo());
+
+        Configuration conf = new Configuration();
+        RiakConfig.addLinkWalkStep(conf, "people", null, true);
+        RiakConfig.addLinkWalkStep(conf, "people", null, true);
+        RiakConfig.setLinkWalkConcurrency(conf, 4);
+
+        RiakLinkWalkRecordReader reader = new RiakLinkWalkRecordReader() {
+            @Override protected synchronized RiakFetcher getFetcher() {
+                return fetcher;
+            }
+        };
+        reader.initialize(new RiakInputSplit(Arrays.asList(root), new RiakPBLocation("127.0.0.1", 8087)),
+                          new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, 0, 0)));
+
+        assertTrue(reader.nextKeyValue());
+        assertEquals(2, reader.getCurrentValue().getLinked(0).size());
+        assertEquals(1, reader.getCurrentValue().getLinked(1).size());
+        reader.close();
+
+        // one fetch for the root, one per distinct target of each hop
+        verify(fetcher, times(1)).fetch(root);
+        verify(fetcher, times(1)).fetch(bob);
+        verify(fetcher, times(1)).fetch(ann);
+        verify(fetcher, times(1)).fetch(sue);
+    }
+
+    private static RiakResponse linksTo(BucketKey... targets) {
+        IRiakObject o = mock(IRiakObject.class);
+        List<RiakLink> links = new ArrayList<RiakLink>();
+        for (BucketKey target : targets) {
+            links.add(new RiakLink(target.getBucket(), target.getKey(), "friend"));
+        }
+        when(o.getLinks()).thenReturn(links);
+        return new RiakResponse(new byte[0], new IRiakObject[] { o });
+    }
+
+    private static Iterator<IRiakObject> iterator(IRiakObject o) {
+        return Collections.singletonList(o).iterator();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakLookupTest {
+
+    private static final BucketKey FOUND = new BucketKey("bucket", "found");
+    private static final BucketKey MISSING = new BucketKey("bucket", "missing");
+
+    @Mock private RiakFetcher fetcher;
+    @Mock private RiakResponse found;
+    @Mock private RiakResponse missing;
+    @Mock private IRiakObject object;
+    @SuppressWarnings("rawtypes") @Mock private TaskInputOutputContext context;
+
+    private Configuration conf;
+
+    @Before public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        conf = new Configuration();
+
+        when(object.getValue()).thenReturn(new byte[10]);
+        when(found.numberOfValues()).thenReturn(1);
+        when(found.iterator()).thenReturn(Collections.singletonList(object).iterator());
+        when(missing.numberOfValues()).thenReturn(0);
+        when(fetcher.fetch(FOUND)).thenReturn(found);
+        when(fetcher.fetch(MISSING)).thenReturn(missing);
+    }
+
+    @Test public void cachesFoundAndNotFound() throws Exception {
+        RiakLookup lookup = new RiakLookup(fetcher, conf, null);
+
+        assertSame(found, lookup.get(FOUND));
+        assertSame(found, lookup.get(FOUND));
+        assertNull(lookup.get(MISSING));
+        assertNull(lookup.get(MISSING));
+
+        verify(fetcher, times(1)).fetch(FOUND);
+        verify(fetcher, times(1)).fetch(MISSING);
+        assertEquals(2, lookup.size());
+    }
+
+    @Test public void notFoundCachingOff() throws Exception {
+        RiakConfig.setLookupNotFoundCaching(conf, false);
+        RiakLookup lookup = new RiakLookup(fetcher, conf, null);
+
+        assertNull(lookup.get(MISSING));
+        assertNull(lookup.get(MISSING));
+
+        verify(fetcher, times(2)).fetch(MISSING);
+    }
+
+    @Test public void evictsBySize() throws Exception {
+        RiakConfig.setLookupCacheSize(conf, 1);
+        RiakLookup lookup = new RiakLookup(fetcher, conf, null);
+
+        lookup.get(FOUND);
+        lookup.get(FOUND);
+
+        verify(fetcher, times(2)).fetch(FOUND);
+        assertEquals(0, lookup.size());
+    }
+
+    @Test public void getAll() throws Exception {
+        RiakLookup lookup = new RiakLookup(fetcher, conf, null);
+
+        Map<BucketKey, RiakResponse> result = lookup.getAll(Arrays.asList(MISSING, FOUND, FOUND));
+
+        assertEquals(1, result.size());
+        assertSame(found, result.get(FOUND));
+        verify(fetcher, times(1)).fetch(FOUND);
+        lookup.close();
+    }
+
+    @Test public void countsInTheCallingThread() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final Counter misses = mock(Counter.class);
+        final Counter notFound = mock(Counter.class);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                assertSame(caller, Thread.currentThread());
+                return null;
+            }
+        }).when(misses).increment(anyLong());
+        when(context.getCounter(RiakLookup.Counters.LOOKUP_MISSES)).thenReturn(misses);
+        when(context.getCounter(RiakLookup.Counters.LOOKUP_NOTFOUND)).thenReturn(notFound);
+        when(context.getCounter(RiakLookup.Counters.LOOKUP_HITS)).thenReturn(mock(Counter.class));
+        when(context.getCounter(RiakLookup.Counters.LOOKUP_COALESCED)).thenReturn(mock(Counter.class));
+        RiakLookup lookup = new RiakLookup(fetcher, conf, context);
+
+        // both misses are fetched on the lookup threads
+        lookup.getAll(Arrays.asList(MISSING, FOUND));
+
+        verify(misses).increment(2);
+        verify(notFound).increment(1);
+        lookup.close();
+    }
+}
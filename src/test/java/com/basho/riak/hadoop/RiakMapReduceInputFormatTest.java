@@ -0,0 +1,56 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.basho.riak.client.query.functions.NamedJSFunction;
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakMapReduceInputFormatTest {
+
+    @Mock public JobContext jobContext;
+
+    private Configuration conf;
+
+    @Before public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        conf = new Configuration();
+        RiakConfig.addInputMapPhase(conf, new NamedJSFunction("Riak.mapValuesJson"), null);
+        when(jobContext.getConfiguration()).thenReturn(conf);
+    }
+
+    @Test(expected = IOException.class) public void incrementalNeedsLastModifiedIndex() throws Exception {
+        RiakConfig.setIncremental(conf, "nightly");
+        new RiakMapReduceInputFormat().getSplits(jobContext);
+    }
+
+    @Test(expected = IOException.class) public void checkpointsNotSupported() throws Exception {
+        RiakConfig.setCheckpointInterval(conf, 60);
+        new RiakMapReduceInputFormat().getSplits(jobContext);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakClient;
+import com.basho.riak.client.RiakException;
+import com.basho.riak.client.query.BucketKeyMapReduce;
+import com.basho.riak.client.query.MapReduceResult;
+import com.basho.riak.client.query.functions.NamedJSFunction;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakLocation;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakMapReduceRecordReaderTest {
+
+    private final RiakLocation host1 = new RiakPBLocation("host1", 8087);
+    private final RiakLocation host2 = new RiakPBLocation("host2", 8087);
+
+    private IRiakClient client1;
+    private IRiakClient client2;
+    private BucketKeyMapReduce failing;
+    private BucketKeyMapReduce working;
+    private RiakMapReduceRecordReader reader;
+    private TaskAttemptContext context;
+
+    @Before public void setUp() throws Exception {
+        client1 = mock(IRiakClient.class);
+        client2 = mock(IRiakClient.class);
+        failing = mock(BucketKeyMapReduce.class);
+        working = mock(BucketKeyMapReduce.class);
+        when(client1.mapReduce()).thenReturn(failing);
+        when(client2.mapReduce()).thenReturn(working);
+        when(failing.execute()).thenThrow(new RiakException("down"));
+
+        Configuration conf = new Configuration();
+        RiakConfig.addInputMapPhase(conf, new NamedJSFunction("Riak.mapValuesJson"), null);
+        RiakConfig.setInputPhasesBatchSize(conf, 2);
+        context = new TaskAttemptContext(conf, new TaskAttemptID("test", 1, true, 0, 0));
+
+        reader = new RiakMapReduceRecordReader() {
+            @Override protected IRiakClient newClient(RiakLocation location) {
+                return host1.equals(location) ? client1 : client2;
+            }
+        };
+    }
+
+    @Test public void runsBatchesWithFailover() throws Exception {
+        MapReduceResult first = mock(MapReduceResult.class);
+        when(first.getResultRaw()).thenReturn("[1,2]");
+        MapReduceResult second = mock(MapReduceResult.class);
+        when(second.getResultRaw()).thenReturn("3");
+        when(working.execute()).thenReturn(first, second);
+
+        reader.initialize(new RiakInputSplit(Arrays.asList(new BucketKey("b", "k1"), new BucketKey("b", "k2"),
+                                                           new BucketKey("b", "k3")),
+                                             new RiakLocation[] { host1, host2 }), context);
+
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(reader.nextKeyValue());
+            assertEquals(i - 1, reader.getCurrentKey().get());
+            assertEquals(Integer.toString(i), reader.getCurrentValue().toString());
+        }
+        assertFalse(reader.nextKeyValue());
+        assertEquals(1, reader.getProgress(), 0.0001);
+
+        // the first batch failed over, the second stuck with the location that worked
+        verify(client1, times(1)).mapReduce();
+        verify(client2, times(2)).mapReduce();
+        verify(working).addInput("b", "k3");
+        reader.close();
+    }
+}
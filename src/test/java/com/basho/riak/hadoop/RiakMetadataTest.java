@@ -0,0 +1,83 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.builders.RiakObjectBuilder;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.RiakMetadata.Sibling;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakMetadataTest {
+
+    private static final byte[] VCLOCK = "a85hYGBgzGDKBVIcypz/fgaGbu7IYEpkzGNlcJ6+9hRfFgA=".getBytes();
+
+    @Test public void writeRead() throws Exception {
+        IRiakObject o1 = RiakObjectBuilder.newBuilder("b", "k").withValue("v1").withVClock(VCLOCK)
+            .withContentType("text/plain").withVtag("vtag1").withLastModified(1000L)
+            .addUsermeta("um", "umv").addIndex("email_bin", "a@b.com").addIndex("age_int", 33).build();
+        IRiakObject o2 = RiakObjectBuilder.newBuilder("b", "k").withValue("v2").withVClock(VCLOCK)
+            .withContentType("application/json").withVtag("vtag2").withLastModified(2000L).build();
+
+        RiakMetadata metadata = new RiakMetadata(new RiakResponse(VCLOCK, new IRiakObject[] { o1, o2 }));
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        metadata.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+
+        RiakMetadata actual = new RiakMetadata();
+        actual.readFields(in);
+
+        assertTrue(actual.exists());
+        assertTrue(Arrays.equals(VCLOCK, actual.getVClock()));
+        assertEquals(2, actual.numberOfValues());
+        assertEquals(2000L, actual.getLastModified().getTime());
+
+        Sibling s = actual.getSiblings().get(0);
+        assertEquals("text/plain", s.getContentType());
+        assertEquals("vtag1", s.getVtag());
+        assertEquals(1000L, s.getLastModified().getTime());
+        assertEquals("umv", s.getUsermeta().get("um"));
+        assertTrue(s.getBinIndexes().get("email_bin").contains("a@b.com"));
+        assertTrue(s.getIntIndexes().get("age_int").contains(33));
+    }
+
+    @Test public void notFound() throws Exception {
+        RiakMetadata metadata = new RiakMetadata(new RiakResponse(null, new IRiakObject[] {}));
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        metadata.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+
+        RiakMetadata actual = new RiakMetadata();
+        actual.readFields(in);
+
+        assertFalse(actual.exists());
+        assertNull(actual.getVClock());
+        assertNull(actual.getLastModified());
+    }
+}
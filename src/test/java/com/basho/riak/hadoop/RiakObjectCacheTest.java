@@ -0,0 +1,147 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.builders.RiakObjectBuilder;
+import com.basho.riak.client.raw.RiakResponse;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakObjectCacheTest {
+
+    private static final byte[] VCLOCK = new byte[] { 1, 2, 3 };
+    private static final byte[] OTHER_VCLOCK = new byte[] { 3, 2, 1 };
+    private static final BucketKey KEY = new BucketKey("bucket", "key");
+
+    private File dir;
+
+    @Before public void setUp() throws Exception {
+        dir = File.createTempFile("riak-object-cache", "");
+        dir.delete();
+    }
+
+    @After public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test public void revalidatesOnVClock() throws Exception {
+        RiakObjectCache cache = new RiakObjectCache(dir, 1024 * 1024);
+
+        assertNull(cache.get(KEY, VCLOCK));
+        cache.put(KEY, response(KEY, VCLOCK, "value"));
+
+        RiakResponse cached = cache.get(KEY, VCLOCK);
+        assertNotNull(cached);
+        assertEquals("value", cached.getRiakObjects()[0].getValueAsString());
+        assertNull(cache.get(KEY, OTHER_VCLOCK));
+    }
+
+    @Test public void sharedThroughTheDirectory() throws Exception {
+        RiakObjectCache first = new RiakObjectCache(dir, 1024 * 1024);
+        RiakObjectCache second = new RiakObjectCache(dir, 1024 * 1024);
+
+        first.put(KEY, response(KEY, VCLOCK, "value"));
+
+        assertNotNull(second.get(KEY, VCLOCK));
+    }
+
+    @Test public void evictsOldestSegments() throws Exception {
+        RiakObjectCache cache = new RiakObjectCache(dir, 2 * 1024 * 1024);
+        final String value = new String(new char[64 * 1024]).replace('\0', 'x');
+
+        for (int i = 0; i < 100; i++) {
+            BucketKey key = new BucketKey("bucket", "key" + i);
+            cache.put(key, response(key, VCLOCK, value));
+        }
+
+        assertNull(cache.get(new BucketKey("bucket", "key0"), VCLOCK));
+        assertNotNull(cache.get(new BucketKey("bucket", "key99"), VCLOCK));
+
+        long size = 0;
+        for (File f : dir.listFiles()) {
+            size += f.length();
+        }
+        assertTrue("cache is " + size + " bytes", size <= 2 * 1024 * 1024);
+    }
+
+    @Test public void tornEntryIsNotAppendedAfter() throws Exception {
+        final BucketKey torn = new BucketKey("bucket", "torn");
+        final BucketKey later = new BucketKey("bucket", "later");
+        RiakObjectCache cache = new RiakObjectCache(dir, 1024 * 1024);
+        cache.put(KEY, response(KEY, VCLOCK, "value"));
+        cache.put(torn, response(torn, VCLOCK, "value"));
+
+        // the task appending the second entry was killed part way through
+        File segment = new File(dir, "segment-0");
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.setLength(raf.length() - 10);
+        } finally {
+            raf.close();
+        }
+
+        RiakObjectCache next = new RiakObjectCache(dir, 1024 * 1024);
+        assertNotNull(next.get(KEY, VCLOCK));
+        assertNull(next.get(torn, VCLOCK));
+
+        next.put(later, response(later, VCLOCK, "value"));
+        RiakObjectCache another = new RiakObjectCache(dir, 1024 * 1024);
+        assertNotNull(another.get(KEY, VCLOCK));
+        assertNotNull(another.get(later, VCLOCK));
+    }
+
+    @Test public void garbageLengthStopsTheScan() throws Exception {
+        RiakObjectCache cache = new RiakObjectCache(dir, 1024 * 1024);
+        cache.put(KEY, response(KEY, VCLOCK, "value"));
+
+        RandomAccessFile raf = new RandomAccessFile(new File(dir, "segment-0"), "rw");
+        try {
+            raf.seek(raf.length());
+            raf.writeInt(-5);
+            raf.writeInt(42);
+        } finally {
+            raf.close();
+        }
+
+        RiakObjectCache next = new RiakObjectCache(dir, 1024 * 1024);
+        assertNotNull(next.get(KEY, VCLOCK));
+    }
+
+    private static RiakResponse response(BucketKey key, byte[] vclock, String value) {
+        IRiakObject o = RiakObjectBuilder.newBuilder(key.getBucket(), key.getKey()).withValue(value)
+            .withVClock(vclock).withContentType("text/plain").build();
+        return new RiakResponse(vclock, new IRiakObject[] { o });
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.builders.RiakObjectBuilder;
+import com.basho.riak.client.raw.RiakResponse;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakObjectWritableTest {
+
+    private static final byte[] VCLOCK = "vclock".getBytes();
+
+    @Test public void writeRead() throws Exception {
+        RiakObjectWritable written = new RiakObjectWritable(object("b", "k", "value"));
+
+        RiakObjectWritable actual = new RiakObjectWritable();
+        roundTrip(written, actual);
+
+        assertEquals(written, actual);
+        assertEquals("value", new String(actual.getValue()));
+        assertTrue(Arrays.equals(VCLOCK, actual.getVClock()));
+        assertEquals("text/plain", actual.getMetadata().getContentType());
+        assertEquals("umv", actual.getMetadata().getUsermeta().get("um"));
+        assertTrue(actual.getMetadata().getIntIndexes().get("age_int").contains(33));
+    }
+
+    @Test public void compressed() throws Exception {
+        char[] big = new char[4096];
+        Arrays.fill(big, 'x');
+        String value = new String(big);
+
+        RiakObjectWritable written = new RiakObjectWritable(object("b", "k", value));
+        DataOutputBuffer plain = new DataOutputBuffer();
+        written.write(plain);
+
+        written.setCompressed(true);
+        RiakObjectWritable actual = new RiakObjectWritable();
+        int compressedLength = roundTrip(written, actual);
+
+        assertTrue(compressedLength < plain.getLength());
+        assertEquals(value, new String(actual.getValue()));
+    }
+
+    @Test public void rawComparator() throws Exception {
+        WritableComparator comparator = WritableComparator.get(RiakObjectWritable.class);
+
+        byte[] a = serialize(new RiakObjectWritable(object("b", "a", "value")));
+        byte[] b = serialize(new RiakObjectWritable(object("b", "b", "v")));
+        byte[] c = serialize(new RiakObjectWritable(object("c", "a", "v")));
+
+        assertTrue(comparator.compare(a, 0, a.length, b, 0, b.length) < 0);
+        assertTrue(comparator.compare(c, 0, c.length, b, 0, b.length) > 0);
+        assertEquals(0, comparator.compare(a, 0, a.length, a, 0, a.length));
+    }
+
+    @Test public void response() throws Exception {
+        RiakResponse response = new RiakResponse(VCLOCK, new IRiakObject[] { object("b", "k", "v1"),
+                                                                            object("b", "k", "v2") });
+        RiakResponseWritable written = new RiakResponseWritable(new BucketKey("b", "k"), response);
+        written.setCompressed(true);
+
+        RiakResponseWritable actual = new RiakResponseWritable();
+        roundTrip(written, actual);
+
+        assertEquals(written, actual);
+        assertEquals(2, actual.numberOfValues());
+        assertTrue(Arrays.equals(VCLOCK, actual.getVClock()));
+
+        WritableComparator comparator = WritableComparator.get(RiakResponseWritable.class);
+        byte[] a = serialize(written);
+        byte[] b = serialize(new RiakResponseWritable(new BucketKey("b", "l"), response));
+        assertTrue(comparator.compare(a, 0, a.length, b, 0, b.length) < 0);
+    }
+
+    private static IRiakObject object(String bucket, String key, String value) {
+        return RiakObjectBuilder.newBuilder(bucket, key).withValue(value).withVClock(VCLOCK)
+            .withContentType("text/plain").addUsermeta("um", "umv").addIndex("age_int", 33).build();
+    }
+
+    private static byte[] serialize(Writable w) throws Exception {
+        DataOutputBuffer out = new DataOutputBuffer();
+        w.write(out);
+        byte[] bytes = new byte[out.getLength()];
+        System.arraycopy(out.getData(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private static int roundTrip(Writable written, Writable read) throws Exception {
+        DataOutputBuffer out = new DataOutputBuffer();
+        written.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        read.readFields(in);
+        return out.getLength();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus.State;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.hadoop.config.RiakConfig;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakOutputCommitterTest {
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path dir;
+
+    @Before public void setUp() throws Exception {
+        File tmp = File.createTempFile("riak-committer", "");
+        tmp.delete();
+        dir = new Path(tmp.toURI());
+
+        conf = new Configuration();
+        RiakConfig.setWorkingDirectory(conf, dir);
+        fs = FileSystem.getLocal(conf);
+    }
+
+    @After public void tearDown() throws Exception {
+        fs.delete(dir, true);
+    }
+
+    @Test public void commitDeletesJobDirectory() throws Exception {
+        JobContext job = new JobContext(conf, new JobID("test", 1));
+        Path limits = InputLimit.getDirectory(conf, job.getJobID().toString());
+        fs.mkdirs(limits);
+
+        new RiakOutputCommitter().commitJob(job);
+
+        assertFalse(fs.exists(RiakConfig.getJobDirectory(conf, job.getJobID().toString())));
+    }
+
+    @Test public void abortDeletesOnlyItsJobDirectory() throws Exception {
+        JobContext failed = new JobContext(conf, new JobID("test", 1));
+        JobContext running = new JobContext(conf, new JobID("test", 2));
+        fs.mkdirs(InputLimit.getDirectory(conf, failed.getJobID().toString()));
+        fs.mkdirs(InputLimit.getDirectory(conf, running.getJobID().toString()));
+
+        new RiakOutputCommitter().abortJob(failed, State.FAILED);
+
+        assertFalse(fs.exists(RiakConfig.getJobDirectory(conf, failed.getJobID().toString())));
+        assertTrue(fs.exists(RiakConfig.getJobDirectory(conf, running.getJobID().toString())));
+    }
+}
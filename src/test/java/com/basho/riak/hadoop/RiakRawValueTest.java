@@ -0,0 +1,87 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.builders.RiakObjectBuilder;
+import com.basho.riak.client.raw.RiakResponse;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakRawValueTest {
+
+    private static final byte[] VCLOCK = "vclock".getBytes();
+
+    @Test public void reusesBuffers() throws Exception {
+        RiakRawValue value = new RiakRawValue();
+
+        value.set(response("first value", "second value"));
+        BytesWritable first = value.getValue();
+        assertEquals(2, value.numberOfValues());
+        assertEquals("second value", string(value.getValue(1)));
+
+        value.set(response("v"));
+        assertSame(first, value.getValue());
+        assertEquals(1, value.numberOfValues());
+        assertEquals(1, value.getMetadata().numberOfValues());
+        assertEquals("v", string(value.getValue()));
+
+        try {
+            value.getValue(1);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // NO-OP
+        }
+    }
+
+    @Test public void writeRead() throws Exception {
+        RiakRawValue value = new RiakRawValue();
+        value.set(response("first value", "second value"));
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        value.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+
+        RiakRawValue actual = new RiakRawValue();
+        actual.set(response("a", "b", "c"));
+        actual.readFields(in);
+
+        assertEquals(2, actual.numberOfValues());
+        assertEquals(2, actual.getMetadata().numberOfValues());
+        assertEquals("first value", string(actual.getValue(0)));
+        assertEquals("second value", string(actual.getValue(1)));
+    }
+
+    private static RiakResponse response(String... values) {
+        IRiakObject[] objects = new IRiakObject[values.length];
+        for (int i = 0; i < values.length; i++) {
+            objects[i] = RiakObjectBuilder.newBuilder("b", "k").withValue(values[i]).withVClock(VCLOCK).build();
+        }
+        return new RiakResponse(VCLOCK, objects);
+    }
+
+    private static String string(BytesWritable bytes) {
+        return new String(bytes.getBytes(), 0, bytes.getLength());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author russell
+ * 
+ */
+public class RiakSnapshotTest {
+
+    private static final String BUCKET = "bucket";
+
+    private File data;
+    private File snapshot;
+
+    @Before public void setUp() throws Exception {
+        data = File.createTempFile("riak-snapshot-test", ".data");
+        snapshot = File.createTempFile("riak-snapshot-test", ".snapshot");
+    }
+
+    @After public void tearDown() {
+        data.delete();
+        snapshot.delete();
+    }
+
+    @Test public void writeAndLookup() throws Exception {
+        final int entries = 5000;
+        RiakSnapshot.Writer writer = new RiakSnapshot.Writer(data);
+        for (int i = 0; i < entries; i++) {
+            writer.add(new BucketKey(BUCKET, "key" + i), ("value" + i).getBytes("UTF-8"));
+        }
+        writer.close();
+
+        OutputStream out = new FileOutputStream(snapshot);
+        writer.writeTo(out);
+        out.close();
+
+        RiakSnapshot actual = RiakSnapshot.open(snapshot);
+
+        assertEquals(entries, actual.size());
+        for (int i = 0; i < entries; i++) {
+            assertTrue(Arrays.equals(("value" + i).getBytes("UTF-8"), actual.get(new BucketKey(BUCKET, "key" + i))));
+        }
+        assertTrue(actual.contains(new BucketKey(BUCKET, "key0")));
+        assertFalse(actual.contains(new BucketKey(BUCKET, "key" + entries)));
+        assertNull(actual.get(new BucketKey("other", "key0")));
+    }
+
+    @Test public void empty() throws Exception {
+        RiakSnapshot.Writer writer = new RiakSnapshot.Writer(data);
+        writer.close();
+
+        OutputStream out = new FileOutputStream(snapshot);
+        writer.writeTo(out);
+        out.close();
+
+        RiakSnapshot actual = RiakSnapshot.open(snapshot);
+
+        assertEquals(0, actual.size());
+        assertNull(actual.get(new BucketKey(BUCKET, "key")));
+    }
+
+    @Test public void nullValueIsEmpty() throws Exception {
+        RiakSnapshot.Writer writer = new RiakSnapshot.Writer(data);
+        writer.add(new BucketKey(BUCKET, "empty"), null);
+        writer.add(new BucketKey(BUCKET, "key"), "value".getBytes("UTF-8"));
+        writeSnapshot(writer);
+
+        RiakSnapshot actual = RiakSnapshot.open(snapshot);
+
+        assertEquals(2, actual.size());
+        assertEquals(0, actual.get(new BucketKey(BUCKET, "empty")).length);
+        assertTrue(Arrays.equals("value".getBytes("UTF-8"), actual.get(new BucketKey(BUCKET, "key"))));
+    }
+
+    @Test(expected = IOException.class) public void rejectsOtherFiles() throws Exception {
+        OutputStream out = new FileOutputStream(snapshot);
+        out.write("not a snapshot at all".getBytes("UTF-8"));
+        out.close();
+
+        RiakSnapshot.open(snapshot);
+    }
+
+    @Test(expected = IOException.class) public void rejectsShortFiles() throws Exception {
+        RiakSnapshot.open(snapshot);
+    }
+
+    @Test(expected = IOException.class) public void rejectsOtherVersions() throws Exception {
+        writeSnapshot(new RiakSnapshot.Writer(data));
+        RandomAccessFile raf = new RandomAccessFile(snapshot, "rw");
+        raf.seek(4);
+        raf.writeInt(2);
+        raf.close();
+
+        RiakSnapshot.open(snapshot);
+    }
+
+    @Test(expected = IOException.class) public void rejectsTruncatedTable() throws Exception {
+        RiakSnapshot.Writer writer = new RiakSnapshot.Writer(data);
+        writer.add(new BucketKey(BUCKET, "key"), "value".getBytes("UTF-8"));
+        writeSnapshot(writer);
+        RandomAccessFile raf = new RandomAccessFile(snapshot, "rw");
+        raf.setLength(20);
+        raf.close();
+
+        RiakSnapshot.open(snapshot);
+    }
+
+    private void writeSnapshot(RiakSnapshot.Writer writer) throws IOException {
+        writer.close();
+        OutputStream out = new FileOutputStream(snapshot);
+        writer.writeTo(out);
+        out.close();
+    }
+}
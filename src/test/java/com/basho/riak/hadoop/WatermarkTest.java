@@ -0,0 +1,119 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.raw.RiakResponse;
+import com.basho.riak.hadoop.config.RiakConfig;
+import com.basho.riak.hadoop.config.RiakPBLocation;
+
+/**
+ * @author russell
+ * 
+ */
+public class WatermarkTest {
+
+    private Configuration conf;
+    private Path dir;
+
+    @Before public void setUp() throws Exception {
+        File tmp = File.createTempFile("riak-watermark", "");
+        tmp.delete();
+        dir = new Path(tmp.toURI());
+
+        conf = new Configuration();
+        RiakConfig.setWorkingDirectory(conf, dir);
+        RiakConfig.setIncremental(conf, "nightly");
+    }
+
+    @After public void tearDown() throws Exception {
+        FileSystem.getLocal(conf).delete(dir, true);
+    }
+
+    @Test public void commitAdvances() throws Exception {
+        assertEquals(0, Watermark.get(conf));
+
+        JobContext first = new JobContext(conf, new JobID("test", 1));
+        Watermark.begin(first, 1000);
+        // not until the job commits
+        assertEquals(0, Watermark.get(conf));
+        Watermark.commit(first);
+        assertEquals(1000, Watermark.get(conf));
+
+        JobContext second = new JobContext(conf, new JobID("test", 2));
+        Watermark.begin(second, 2000);
+        Watermark.commit(second);
+        assertEquals(2000, Watermark.get(conf));
+    }
+
+    @Test public void abortKeepsWatermark() throws Exception {
+        JobContext first = new JobContext(conf, new JobID("test", 1));
+        Watermark.begin(first, 1000);
+        Watermark.commit(first);
+
+        JobContext failed = new JobContext(conf, new JobID("test", 2));
+        Watermark.begin(failed, 2000);
+        Watermark.abort(failed);
+
+        assertEquals(1000, Watermark.get(conf));
+    }
+
+    @Test public void readsWritesInTheWatermarksSecond() throws Exception {
+        JobContext first = new JobContext(conf, new JobID("test", 1));
+        Watermark.begin(first, 12500);
+        Watermark.commit(first);
+
+        final BucketKey key = new BucketKey("b", "k");
+        final RiakFetcher fetcher = mock(RiakFetcher.class);
+        IRiakObject o = mock(IRiakObject.class);
+        // written after the watermark, but the date is only to the second
+        when(o.getLastModified()).thenReturn(new Date(12000));
+        when(fetcher.head(key)).thenReturn(new RiakResponse(new byte[0], new IRiakObject[] { o }));
+
+        AbstractRiakRecordReader<String> reader = new AbstractRiakRecordReader<String>() {
+            @Override protected String read(BucketKey key) {
+                return key.getKey();
+            }
+
+            @Override protected synchronized RiakFetcher getFetcher() {
+                return fetcher;
+            }
+        };
+        reader.initialize(new RiakInputSplit(Arrays.asList(key), new RiakPBLocation("127.0.0.1", 8087)),
+                          new TaskAttemptContext(conf, new TaskAttemptID("test", 2, true, 0, 0)));
+
+        assertTrue(reader.nextKeyValue());
+        assertEquals("k", reader.getCurrentValue());
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.cap;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+
+/**
+ * @author russell
+ * 
+ */
+public class LastModifiedResolverTest {
+
+    private final LastModifiedResolver resolver = new LastModifiedResolver();
+
+    @Test public void latestWins() {
+        IRiakObject old = object(1000L);
+        IRiakObject unknown = object(null);
+        IRiakObject latest = object(2000L);
+
+        assertSame(latest, resolver.resolve(Arrays.asList(unknown, old, latest)));
+        assertSame(latest, resolver.resolve(Arrays.asList(latest, unknown, old)));
+    }
+
+    @Test public void noSiblings() {
+        assertNull(resolver.resolve(new ArrayList<IRiakObject>()));
+    }
+
+    private static IRiakObject object(Long lastModified) {
+        IRiakObject o = mock(IRiakObject.class);
+        when(o.getLastModified()).thenReturn(lastModified == null ? null : new Date(lastModified));
+        return o;
+    }
+}
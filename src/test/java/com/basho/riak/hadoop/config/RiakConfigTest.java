@@ -14,6 +14,8 @@
 package com.basho.riak.hadoop.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -22,6 +24,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.junit.Test;
 
 import com.basho.riak.client.query.indexes.BinIndex;
+import com.basho.riak.client.raw.FetchMeta;
 import com.basho.riak.client.raw.query.indexes.BinRangeQuery;
 import com.basho.riak.hadoop.config.RiakConfig;
 import com.basho.riak.hadoop.config.RiakHTTPLocation;
@@ -98,4 +101,27 @@ public class RiakConfigTest {
         actual = RiakConfig.getKeyLister(conf);
         assertEquals(sikl, actual);
     }
+
+    @Test public void inputFetchMeta() {
+        Configuration conf = new Configuration();
+        assertNull(RiakConfig.getInputFetchMeta(conf));
+
+        RiakConfig.setInputR(conf, 1);
+        RiakConfig.setInputNotFoundOK(conf, true);
+        FetchMeta meta = RiakConfig.getInputFetchMeta(conf);
+        assertNotNull(meta);
+        assertEquals(Integer.valueOf(1), meta.getR());
+        assertNull(meta.getPr());
+        assertEquals(Boolean.TRUE, meta.getNotFoundOK());
+        assertNull(meta.getBasicQuorum());
+
+        RiakConfig.setInputPR(conf, 2);
+        RiakConfig.setInputNotFoundOK(conf, false);
+        RiakConfig.setInputBasicQuorum(conf, true);
+        meta = RiakConfig.getInputFetchMeta(conf);
+        assertEquals(Integer.valueOf(1), meta.getR());
+        assertEquals(Integer.valueOf(2), meta.getPr());
+        assertEquals(Boolean.FALSE, meta.getNotFoundOK());
+        assertEquals(Boolean.TRUE, meta.getBasicQuorum());
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.convert;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.basho.riak.client.IRiakObject;
+import com.basho.riak.client.convert.ConversionException;
+
+/**
+ * @author russell
+ * 
+ */
+public class JSONBytesConverterTest {
+
+    @SuppressWarnings("rawtypes") private final JSONBytesConverter<Map> converter = new JSONBytesConverter<Map>(Map.class);
+
+    @Test public void toDomain() throws Exception {
+        @SuppressWarnings("rawtypes") Map actual = converter.toDomain(object("{\"name\":\"riak\"}".getBytes("UTF-8")));
+
+        assertEquals("riak", actual.get("name"));
+        assertNull(converter.toDomain(object(new byte[0])));
+    }
+
+    @Test public void badJSON() throws Exception {
+        try {
+            converter.toDomain(object("{not json".getBytes("UTF-8")));
+            fail("Expected ConversionException");
+        } catch (ConversionException e) {
+            // NO-OP
+        }
+    }
+
+    private static IRiakObject object(byte[] value) {
+        IRiakObject o = mock(IRiakObject.class);
+        when(o.getValue()).thenReturn(value);
+        return o;
+    }
+}
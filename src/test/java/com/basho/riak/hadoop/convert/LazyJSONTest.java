@@ -0,0 +1,56 @@
+/*
+ * This file is provided to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.basho.riak.hadoop.convert;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author russell
+ * 
+ */
+public class LazyJSONTest {
+
+    private static final String DOC = "  {\"name\":\"riak\",\"tags\":[{\"a\":1},[2,3]],"
+                                      + "\"address\":{\"city\":\"Cambridge\",\"zip\":null,\"geo\":{\"lat\":52.2}},"
+                                      + "\"stars\":1200,\"active\":true}";
+
+    @Test public void paths() throws Exception {
+        LazyJSON json = new LazyJSON(DOC.getBytes("UTF-8"));
+
+        assertEquals("riak", json.getString("name"));
+        assertEquals("Cambridge", json.getString("address", "city"));
+        assertEquals(52.2, json.getDouble("address", "geo", "lat"), 0.0001);
+        assertEquals(Long.valueOf(1200), json.getLong("stars"));
+        assertEquals(Boolean.TRUE, json.getBoolean("active"));
+        assertNull(json.getString("address", "zip"));
+        assertTrue(json.has("address", "zip"));
+        assertFalse(json.has("address", "street"));
+        assertNull(json.getString("missing"));
+        assertNull(json.getString("name", "nested"));
+        assertEquals(2, json.getNode("tags").size());
+    }
+
+    @Test public void reuse() throws Exception {
+        byte[] buffer = ("xx" + DOC + "yy").getBytes("UTF-8");
+        LazyJSON json = new LazyJSON("{\"name\":\"other\"}".getBytes("UTF-8"));
+        assertEquals("other", json.getString("name"));
+
+        json.set(buffer, 2, buffer.length - 4);
+        assertEquals("riak", json.getString("name"));
+        assertEquals(Long.valueOf(1200), json.getLong("stars"));
+        assertEquals("Cambridge", json.getString("address", "city"));
+    }
+}
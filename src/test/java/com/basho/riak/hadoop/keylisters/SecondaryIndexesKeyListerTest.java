@@ -15,10 +15,13 @@ package com.basho.riak.hadoop.keylisters;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -29,6 +32,7 @@ import com.basho.riak.client.IRiakClient;
 import com.basho.riak.client.query.IndexMapReduce;
 import com.basho.riak.client.query.MapReduceResult;
 import com.basho.riak.client.query.functions.Args;
+import com.basho.riak.client.query.functions.JSSourceFunction;
 import com.basho.riak.client.query.functions.NamedErlangFunction;
 import com.basho.riak.client.query.indexes.BinIndex;
 import com.basho.riak.client.query.indexes.IntIndex;
@@ -146,6 +150,39 @@ public class SecondaryIndexesKeyListerTest {
         testLister(listerToo, query);
     }
 
+    @Test public void getEntries_value() throws Exception {
+        IndexQuery query = new IntValueQuery(IntIndex.named(INDEX), BUCKET, 10);
+        lister = new SecondaryIndexesKeyLister(query);
+
+        final Collection<BucketKey> keys = Arrays.asList(new BucketKey(BUCKET, "k1"), new BucketKey(BUCKET, "k2"));
+        when(riakClient.mapReduce(query)).thenReturn(indexMapReduce);
+        when(indexMapReduce.addReducePhase(NamedErlangFunction.REDUCE_IDENTITY, Args.REDUCE_PHASE_ONLY_1)).thenReturn(indexMapReduce);
+        when(indexMapReduce.execute()).thenReturn(result);
+        when(result.getResult(BucketKey.class)).thenReturn(keys);
+
+        List<IndexEntry> entries = lister.getEntries(riakClient);
+
+        assertEquals(Arrays.asList(new IndexEntry(new BucketKey(BUCKET, "k1"), "10"),
+                                   new IndexEntry(new BucketKey(BUCKET, "k2"), "10")), entries);
+    }
+
+    @Test public void getEntries_range() throws Exception {
+        IndexQuery query = new BinRangeQuery(BinIndex.named(INDEX), BUCKET, FROM, TO);
+        lister = new SecondaryIndexesKeyLister(query);
+
+        final Collection<String[]> terms = Arrays.asList(new String[] { BUCKET, "k1", "g" }, new String[] { BUCKET,
+                                                                                                          "k1", "h" });
+        when(riakClient.mapReduce(query)).thenReturn(indexMapReduce);
+        when(indexMapReduce.addMapPhase(any(JSSourceFunction.class), anyObject())).thenReturn(indexMapReduce);
+        when(indexMapReduce.execute()).thenReturn(result);
+        when(result.getResult(String[].class)).thenReturn(terms);
+
+        List<IndexEntry> entries = lister.getEntries(riakClient);
+
+        assertEquals(Arrays.asList(new IndexEntry(new BucketKey(BUCKET, "k1"), "g"),
+                                   new IndexEntry(new BucketKey(BUCKET, "k1"), "h")), entries);
+    }
+
     private void testLister(SecondaryIndexesKeyLister lister, IndexQuery query) throws Exception {
         final Collection<BucketKey> expected = Arrays.asList(new BucketKey(BUCKET, "k1"), new BucketKey(BUCKET, "k2"));
         when(riakClient.mapReduce(query)).thenReturn(indexMapReduce);